@@ -0,0 +1,301 @@
+package com.abhijeet.chat_application.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps chat_messages range-partitioned by month on its timestamp column.
+ * Off unless chat.messages.partitioning.enabled=true.
+ *
+ * When enabled, the existing plain table is converted once. Rows are not
+ * copied, but the conversion does read the whole table: rows without a
+ * timestamp are backfilled, then a range check constraint is added NOT VALID
+ * and validated, and a unique (id, timestamp) index is built concurrently.
+ * These steps run before the switch-over and do not block writes. The
+ * range constraint rejects new rows from the cutover month on, so it is
+ * dropped again if the conversion fails, and a later attempt first drops any
+ * range constraint an interrupted attempt left behind. An index left invalid
+ * by an interrupted concurrent build is dropped and rebuilt. The
+ * switch-over itself, in one short transaction, renames the table to
+ * chat_messages_pre_YYYYMM and attaches it as the partition holding
+ * everything before that month; the validated constraint and the prebuilt
+ * indexes let the attach skip its own scan and index builds. New months get
+ * their own chat_messages_pYYYYMM partitions, and a default partition
+ * catches rows outside every range so inserts never fail. Ids stay unique
+ * per (id, timestamp), the most a partitioned table can enforce; they are
+ * unique on their own by construction.
+ *
+ * A daily job creates the next chat.messages.partitions-ahead months and,
+ * when chat.messages.retention-months is set, detaches (or with
+ * chat.messages.retention-action=drop, drops) partitions that lie entirely
+ * before the retention window. Detached partitions stay as standalone tables
+ * for archiving. History queries filter and sort on timestamp, so Postgres
+ * prunes partitions outside the requested range.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatMessagePartitionManager implements ApplicationRunner {
+
+    private static final String PARENT = "chat_messages";
+    private static final String MONTH_PREFIX = "chat_messages_p";
+    private static final String LEGACY_PREFIX = "chat_messages_pre_";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Serializes partition DDL across nodes
+    private static final long LOCK_KEY = 0x63686174_6d736770L;
+
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'chat_messages'::regclass
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${chat.messages.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.messages.partitions-ahead:2}")
+    private int partitionsAhead;
+
+    @Value("${chat.messages.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${chat.messages.retention-action:detach}")
+    private String retentionAction;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        if (isPlainTable()) {
+            // The first month that gets its own partition; everything before stays in the converted table
+            YearMonth cutover = YearMonth.now().plusMonths(1);
+            try {
+                prepareConversion(cutover);
+                transactionTemplate.executeWithoutResult(status -> {
+                    lock();
+                    convertPlainTable(cutover);
+                });
+            } catch (RuntimeException e) {
+                // Left in place, the constraint would reject every insert from the cutover month on
+                try {
+                    dropRangeConstraints(null);
+                } catch (RuntimeException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                throw e;
+            }
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${chat.messages.partition-cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!enabled || !isPartitioned()) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= partitionsAhead; i++) {
+            createMonth(current.plusMonths(i));
+        }
+        if (retentionMonths > 0) {
+            applyRetention(current.minusMonths(retentionMonths));
+        }
+    }
+
+    /**
+     * The slow part of the conversion, done while the table stays in use:
+     * each statement commits on its own, takes no lock that blocks writes for
+     * longer than a moment, and is safe to repeat after a failed attempt.
+     */
+    private void prepareConversion(YearMonth cutover) {
+        String range = rangeConstraint(cutover);
+        log.info("Preparing chat_messages for partitioning; this reads the whole table once");
+        jdbcTemplate.update("UPDATE chat_messages SET timestamp = '1970-01-01' WHERE timestamp IS NULL");
+        transactionTemplate.executeWithoutResult(status -> {
+            lock();
+            // Earlier attempts picked their own cutover; their constraints would block inserts before this one's
+            dropRangeConstraints(range);
+            Integer exists = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM pg_constraint WHERE conname = ?", Integer.class, range);
+            if (exists == null || exists == 0) {
+                // Enforced for new rows at once; existing rows are checked by VALIDATE below
+                jdbcTemplate.execute("ALTER TABLE chat_messages ADD CONSTRAINT " + range + " CHECK "
+                        + "(timestamp IS NOT NULL AND timestamp < '" + cutover.atDay(1) + "') NOT VALID");
+            }
+        });
+        // Holds only a SHARE UPDATE EXCLUSIVE lock, so inserts and updates continue meanwhile
+        jdbcTemplate.execute("ALTER TABLE chat_messages VALIDATE CONSTRAINT " + range);
+        Boolean indexValid = jdbcTemplate.query(
+                "SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass('chat_messages_id_timestamp_pre')",
+                rs -> rs.next() ? rs.getBoolean(1) : null);
+        if (Boolean.FALSE.equals(indexValid)) {
+            // A failed concurrent build leaves an invalid index that IF NOT EXISTS would keep
+            log.info("Rebuilding invalid index chat_messages_id_timestamp_pre");
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY chat_messages_id_timestamp_pre");
+        }
+        // Matches the parent's unique index, so ATTACH reuses it instead of building one under lock
+        jdbcTemplate.execute("CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS chat_messages_id_timestamp_pre "
+                + "ON chat_messages (id, timestamp)");
+    }
+
+    private void convertPlainTable(YearMonth cutover) {
+        if (!isPlainTable()) {
+            // Converted by another node meanwhile
+            return;
+        }
+        String legacy = LEGACY_PREFIX + cutover.format(SUFFIX);
+        String bound = cutover.atDay(1).toString();
+        String range = rangeConstraint(cutover);
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT 1 FROM chat_messages LIMIT 1) t",
+                Long.class);
+        log.info("Converting chat_messages to a monthly partitioned table");
+
+        // Free the table, constraint and index names for the partitioned parent
+        jdbcTemplate.execute("ALTER TABLE chat_messages RENAME TO " + legacy);
+        Integer hasPrimaryKey = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = 'chat_messages_pkey'", Integer.class);
+        if (hasPrimaryKey != null && hasPrimaryKey > 0) {
+            jdbcTemplate.execute("ALTER TABLE " + legacy + " RENAME CONSTRAINT chat_messages_pkey TO " + legacy + "_pkey");
+        }
+        for (String index : List.of("idx_chat_timestamp", "idx_chat_room_id", "idx_sender_status")) {
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS " + index + " RENAME TO " + index + "_pre");
+        }
+        // ATTACH rejects an identity column the parent does not have; ids come from TimeOrderedIds now
+        jdbcTemplate.execute("ALTER TABLE " + legacy + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+
+        jdbcTemplate.execute("CREATE TABLE chat_messages (LIKE " + legacy
+                + " INCLUDING DEFAULTS) PARTITION BY RANGE (timestamp)");
+        // A unique index on a partitioned table must include the partition key
+        jdbcTemplate.execute("CREATE UNIQUE INDEX idx_chat_messages_id ON chat_messages (id, timestamp)");
+        jdbcTemplate.execute("CREATE INDEX idx_chat_timestamp ON chat_messages (chat_room_id, timestamp)");
+        jdbcTemplate.execute("CREATE INDEX idx_chat_room_id ON chat_messages (chat_room_id, id)");
+        jdbcTemplate.execute("CREATE INDEX idx_sender_status ON chat_messages (sender_id, status)");
+        jdbcTemplate.execute("CREATE TABLE chat_messages_default PARTITION OF chat_messages DEFAULT");
+
+        if (rows == null || rows == 0) {
+            jdbcTemplate.execute("DROP TABLE " + legacy);
+        } else {
+            // The constraint validated in prepareConversion() implies the partition bound, so ATTACH does not scan
+            jdbcTemplate.execute("ALTER TABLE chat_messages ATTACH PARTITION " + legacy
+                    + " FOR VALUES FROM (MINVALUE) TO ('" + bound + "')");
+            jdbcTemplate.execute("ALTER TABLE " + legacy + " DROP CONSTRAINT " + range);
+        }
+        jdbcTemplate.execute("ALTER TABLE chat_messages ADD FOREIGN KEY (chat_room_id) REFERENCES chat_rooms (id)");
+        jdbcTemplate.execute("ALTER TABLE chat_messages ADD FOREIGN KEY (sender_id) REFERENCES users (id)");
+        log.info("chat_messages is now partitioned; rows before {} live in {}", bound, legacy);
+    }
+
+    private void createMonth(YearMonth month) {
+        if (coveredByLegacy(month)) {
+            return;
+        }
+        String name = MONTH_PREFIX + month.format(SUFFIX);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lock();
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT
+                        + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+            });
+        } catch (Exception e) {
+            // Usually rows for this month already sit in the default partition
+            log.warn("Could not create partition {}: {}", name, e.getMessage());
+        }
+    }
+
+    // Removes partitions whose whole range ends on or before the start of the retention window
+    private void applyRetention(YearMonth oldestKept) {
+        LocalDate cutoff = oldestKept.atDay(1);
+        for (String partition : partitions()) {
+            YearMonth end = upperBound(partition);
+            if (end == null || end.atDay(1).isAfter(cutoff)) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    lock();
+                    jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + partition);
+                    if ("drop".equalsIgnoreCase(retentionAction)) {
+                        jdbcTemplate.execute("DROP TABLE " + partition);
+                    }
+                });
+                log.info("Retention: {} partition {}", "drop".equalsIgnoreCase(retentionAction) ? "dropped"
+                        : "detached", partition);
+            } catch (Exception e) {
+                log.warn("Retention failed for partition {}: {}", partition, e.getMessage());
+            }
+        }
+    }
+
+    // Exclusive end month of a partition, from its name; null for the default partition
+    private static YearMonth upperBound(String partition) {
+        if (partition.startsWith(LEGACY_PREFIX)) {
+            return YearMonth.parse(partition.substring(LEGACY_PREFIX.length()), SUFFIX);
+        }
+        if (partition.startsWith(MONTH_PREFIX)) {
+            return YearMonth.parse(partition.substring(MONTH_PREFIX.length()), SUFFIX).plusMonths(1);
+        }
+        return null;
+    }
+
+    private boolean coveredByLegacy(YearMonth month) {
+        for (String partition : partitions()) {
+            if (partition.startsWith(LEGACY_PREFIX) && month.isBefore(upperBound(partition))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList(PARTITIONS_SQL, String.class);
+    }
+
+    // Drops the range constraints conversion attempts added to the plain table, except the one named keep
+    private void dropRangeConstraints(String keep) {
+        List<String> leftovers = jdbcTemplate.queryForList("""
+                SELECT conname FROM pg_constraint
+                WHERE conrelid = to_regclass('chat_messages') AND contype = 'c'
+                AND conname LIKE 'chat\\_messages\\_pre\\_%\\_range'
+                """, String.class);
+        for (String leftover : leftovers) {
+            if (!leftover.equals(keep)) {
+                jdbcTemplate.execute("ALTER TABLE chat_messages DROP CONSTRAINT IF EXISTS " + leftover);
+            }
+        }
+    }
+
+    private static String rangeConstraint(YearMonth cutover) {
+        return LEGACY_PREFIX + cutover.format(SUFFIX) + "_range";
+    }
+
+    private boolean isPlainTable() {
+        return "r".equals(jdbcTemplate.query("SELECT relkind FROM pg_class WHERE oid = to_regclass('chat_messages')",
+                rs -> rs.next() ? rs.getString(1) : null));
+    }
+
+    private boolean isPartitioned() {
+        return "p".equals(jdbcTemplate.query("SELECT relkind FROM pg_class WHERE oid = to_regclass('chat_messages')",
+                rs -> rs.next() ? rs.getString(1) : null));
+    }
+
+    private void lock() {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+    }
+}
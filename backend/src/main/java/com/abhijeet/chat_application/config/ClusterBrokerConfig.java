@@ -0,0 +1,66 @@
+package com.abhijeet.chat_application.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Cluster fan-out mode. Enabled with chat.broker.mode=redis so that broadcasts
+ * reach WebSocket sessions connected to any backend node.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "redis")
+public class ClusterBrokerConfig {
+
+    @Bean
+    public RedisTemplate<String, byte[]> brokerRelayRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    @Bean
+    public ClusterBrokerRelay clusterBrokerRelay(
+            @Qualifier("brokerRelayRedisTemplate") RedisTemplate<String, byte[]> brokerRelayRedisTemplate,
+            @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+            ObjectProvider<ClusterBrokerRelay.RemoteBroadcastListener> remoteBroadcastListeners) {
+        return new ClusterBrokerRelay(brokerRelayRedisTemplate, brokerChannel, remoteBroadcastListeners);
+    }
+
+    // One thread, so relayed messages reach the local broker in the order they were published.
+    // Not exposed as a bean, which would replace the application's default task executor.
+    private final ThreadPoolTaskExecutor relayExecutor = new ThreadPoolTaskExecutor();
+
+    @Bean
+    public RedisMessageListenerContainer brokerRelayListenerContainer(RedisConnectionFactory redisConnectionFactory,
+            ClusterBrokerRelay clusterBrokerRelay) {
+        relayExecutor.setCorePoolSize(1);
+        relayExecutor.setMaxPoolSize(1);
+        relayExecutor.setThreadNamePrefix("broker-relay-");
+        relayExecutor.initialize();
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.setTaskExecutor(relayExecutor);
+        container.addMessageListener(clusterBrokerRelay, new ChannelTopic(ClusterBrokerRelay.CHANNEL));
+        return container;
+    }
+
+    @PreDestroy
+    void shutdownRelayExecutor() {
+        relayExecutor.shutdown();
+    }
+}
@@ -0,0 +1,162 @@
+package com.abhijeet.chat_application.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Relays broker messages between backend nodes over Redis pub/sub.
+ *
+ * A broadcast is published to Redis once, carrying its payload and the list
+ * of "/topic" destinations it goes to; {@link #publish} is called by the
+ * fan-out service for that. Each node subscribes to the same channel and
+ * fans messages published by other nodes out to its own broker channel, so
+ * subscribers connected to any node receive the broadcast. As a channel
+ * interceptor, the relay also forwards any other "/topic" message handed to
+ * the local broker, one publish per message. Beans implementing
+ * {@link RemoteBroadcastListener} see each message from another node once,
+ * before it reaches the local broker.
+ */
+@Slf4j
+public class ClusterBrokerRelay implements ChannelInterceptor, MessageListener {
+
+    public static final String CHANNEL = "chat:broker";
+
+    // Marks messages that arrived from another node, or were already published, so they are not published again
+    public static final String RELAYED_HEADER = "x-cluster-relayed";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final MessageChannel brokerChannel;
+    private final ObjectProvider<RemoteBroadcastListener> remoteBroadcastListeners;
+
+    /**
+     * Keeps node-local state, such as caches of what was broadcast, in step
+     * with broadcasts made on other nodes.
+     */
+    public interface RemoteBroadcastListener {
+
+        void onRemoteBroadcast(List<String> destinations, MimeType contentType, byte[] payload);
+    }
+
+    public ClusterBrokerRelay(RedisTemplate<String, byte[]> redisTemplate, MessageChannel brokerChannel,
+            ObjectProvider<RemoteBroadcastListener> remoteBroadcastListeners) {
+        this.redisTemplate = redisTemplate;
+        this.brokerChannel = brokerChannel;
+        this.remoteBroadcastListeners = remoteBroadcastListeners;
+    }
+
+    /**
+     * Publish one payload for all its destinations to the other nodes in a
+     * single Redis message. Destinations outside "/topic" are left out.
+     */
+    public void publish(Collection<String> destinations, MimeType contentType, byte[] payload) {
+        List<String> topics = new ArrayList<>(destinations.size());
+        for (String destination : destinations) {
+            if (destination != null && destination.startsWith("/topic")) {
+                topics.add(destination);
+            }
+        }
+        if (topics.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(CHANNEL, encode(topics, contentType, payload));
+        } catch (Exception e) {
+            // Local delivery still happens; only remote nodes miss this message
+            log.warn("Failed to relay message for {} destinations to cluster: {}", topics.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (headers.containsKey(RELAYED_HEADER)
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        publish(List.of(destination), SimpMessageHeaderAccessor.getContentType(headers), payload);
+        return message;
+    }
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message redisMessage, byte[] pattern) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(redisMessage.getBody()))) {
+            String origin = in.readUTF();
+            if (nodeId.equals(origin)) {
+                return;
+            }
+            String contentType = in.readUTF();
+            int count = in.readInt();
+            List<String> destinations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                destinations.add(in.readUTF());
+            }
+            byte[] payload = in.readNBytes(in.readInt());
+            MimeType mimeType = contentType.isEmpty() ? null : MimeType.valueOf(contentType);
+
+            remoteBroadcastListeners.orderedStream().forEach(listener -> {
+                try {
+                    listener.onRemoteBroadcast(destinations, mimeType, payload);
+                } catch (Exception e) {
+                    log.warn("Remote broadcast listener {} failed: {}", listener.getClass().getSimpleName(),
+                            e.getMessage());
+                }
+            });
+
+            for (String destination : destinations) {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setDestination(destination);
+                if (mimeType != null) {
+                    accessor.setContentType(mimeType);
+                }
+                accessor.setHeader(RELAYED_HEADER, origin);
+                brokerChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+            }
+        } catch (IOException e) {
+            log.warn("Dropping malformed cluster broker message: {}", e.getMessage());
+        }
+    }
+
+    private byte[] encode(List<String> destinations, MimeType contentType, byte[] payload) throws IOException {
+        int destinationBytes = 0;
+        for (String destination : destinations) {
+            destinationBytes += destination.length() + 2;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + destinationBytes + 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(nodeId);
+            out.writeUTF(contentType != null ? contentType.toString() : "");
+            out.writeInt(destinations.size());
+            for (String destination : destinations) {
+                out.writeUTF(destination);
+            }
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        return bytes.toByteArray();
+    }
+}
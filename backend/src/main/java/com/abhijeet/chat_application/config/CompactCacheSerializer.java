@@ -0,0 +1,96 @@
+package com.abhijeet.chat_application.config;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Redis cache value codec: JSON with type information, gzipped above a size threshold.
+ *
+ * Each value starts with a one-byte format marker so compressed and plain
+ * entries can be mixed. Entries written by the previous JDK serializer are
+ * read as a miss and get overwritten on the next load.
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+
+    private static final byte PLAIN = 0;
+    private static final byte GZIP = 1;
+
+    // First byte of the JDK serialization stream magic (0xACED)
+    private static final byte JDK_STREAM_MAGIC = (byte) 0xAC;
+
+    private final ObjectMapper objectMapper;
+    private final int compressionThreshold;
+
+    public CompactCacheSerializer(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.objectMapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.abhijeet.chat_application.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.time.")
+                .allowIfSubType("java.lang.")
+                .build(), ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            if (json.length < compressionThreshold) {
+                return withMarker(PLAIN, json);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2 + 16);
+            bytes.write(GZIP);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                gzip.write(json);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write cache value", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0 || bytes[0] == JDK_STREAM_MAGIC) {
+            return null;
+        }
+        try {
+            if (bytes[0] == PLAIN) {
+                return objectMapper.readValue(bytes, 1, bytes.length - 1, Object.class);
+            }
+            if (bytes[0] == GZIP) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+                    return objectMapper.readValue(in, Object.class);
+                }
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not read cache value", e);
+        }
+        throw new SerializationException("Unknown cache value format " + bytes[0]);
+    }
+
+    private static byte[] withMarker(byte marker, byte[] payload) {
+        byte[] out = new byte[payload.length + 1];
+        out[0] = marker;
+        System.arraycopy(payload, 0, out, 1, payload.length);
+        return out;
+    }
+}
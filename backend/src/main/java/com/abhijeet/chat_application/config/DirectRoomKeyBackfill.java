@@ -0,0 +1,48 @@
+package com.abhijeet.chat_application.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills chat_rooms.direct_key for 1:1 rooms created before the column
+ * existed. Only the oldest room of each pair gets the key, so historical
+ * duplicates do not break the unique constraint. A no-op once every room has
+ * been backfilled.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DirectRoomKeyBackfill implements ApplicationRunner {
+
+    private static final String BACKFILL_SQL = """
+            UPDATE chat_rooms r SET direct_key = s.direct_key
+            FROM (
+                SELECT DISTINCT ON (k.direct_key) k.chat_room_id, k.direct_key
+                FROM (
+                    SELECT p.chat_room_id, MIN(p.user_id) || ':' || MAX(p.user_id) AS direct_key
+                    FROM chat_room_participants p
+                    JOIN chat_rooms c ON c.id = p.chat_room_id
+                    WHERE c.is_group_chat = false AND c.direct_key IS NULL
+                    GROUP BY p.chat_room_id
+                    HAVING COUNT(*) = 2
+                ) k
+                ORDER BY k.direct_key, k.chat_room_id
+            ) s
+            WHERE r.id = s.chat_room_id
+              AND NOT EXISTS (SELECT 1 FROM chat_rooms x WHERE x.direct_key = s.direct_key)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int updated = jdbcTemplate.update(BACKFILL_SQL);
+        if (updated > 0) {
+            log.info("Backfilled direct_key for {} 1:1 chat rooms", updated);
+        }
+    }
+}
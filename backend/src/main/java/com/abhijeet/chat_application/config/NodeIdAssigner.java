@@ -0,0 +1,133 @@
+package com.abhijeet.chat_application.config;
+
+import com.abhijeet.chat_application.entity.id.TimeOrderedIds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Gives this node the id that {@link TimeOrderedIds} embeds in every message
+ * id, so two nodes never issue the same id.
+ *
+ * An explicit chat.node-id (or CHAT_NODE_ID) always wins. Otherwise a single
+ * node uses 0, and with chat.broker.mode=redis the node leases the first free
+ * id from Redis (chat:node-id:{n}, set with NX and a TTL) and keeps renewing
+ * it. Startup fails when every id is taken.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NodeIdAssigner {
+
+    private static final String KEY_PREFIX = "chat:node-id:";
+
+    // Renew or release the lease only while this instance still holds it
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${chat.node-id:${CHAT_NODE_ID:}}")
+    private String configuredNodeId;
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.node-lease.ttl-seconds:60}")
+    private long leaseSeconds;
+
+    private final String owner = UUID.randomUUID().toString();
+    private volatile Long leasedNodeId;
+
+    @PostConstruct
+    void assign() {
+        if (configuredNodeId != null && !configuredNodeId.isBlank()) {
+            long nodeId;
+            try {
+                nodeId = Long.parseLong(configuredNodeId.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("chat.node-id must be a number, got '" + configuredNodeId + "'");
+            }
+            TimeOrderedIds.setNodeId(nodeId);
+            log.info("Using configured node id {}", nodeId);
+            return;
+        }
+        if (!"redis".equals(brokerMode)) {
+            TimeOrderedIds.setNodeId(0L);
+            return;
+        }
+        Long nodeId = lease();
+        if (nodeId == null) {
+            throw new IllegalStateException("All " + (TimeOrderedIds.MAX_NODE + 1)
+                    + " node ids are leased; set chat.node-id explicitly or stop a node");
+        }
+        TimeOrderedIds.setNodeId(nodeId);
+        log.info("Leased node id {}", nodeId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.node-lease.renew-ms:20000}")
+    void renew() {
+        Long nodeId = leasedNodeId;
+        if (nodeId == null) {
+            return;
+        }
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(KEY_PREFIX + nodeId), owner,
+                    String.valueOf(leaseSeconds));
+            if (renewed != null && renewed == 1L) {
+                return;
+            }
+            // The lease expired, e.g. during a Redis outage, and may belong to another node now
+            log.error("Lost the lease on node id {}; leasing a new one", nodeId);
+            Long replacement = lease();
+            if (replacement != null) {
+                TimeOrderedIds.setNodeId(replacement);
+                log.info("Leased node id {}", replacement);
+            } else {
+                // Retried on the next renewal
+                log.error("No free node id to replace {}", nodeId);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to renew the lease on node id {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void release() {
+        Long nodeId = leasedNodeId;
+        if (nodeId == null) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + nodeId), owner);
+        } catch (Exception e) {
+            log.warn("Failed to release node id {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private Long lease() {
+        for (long candidate = 0; candidate <= TimeOrderedIds.MAX_NODE; candidate++) {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + candidate, owner,
+                    Duration.ofSeconds(leaseSeconds));
+            if (Boolean.TRUE.equals(acquired)) {
+                leasedNodeId = candidate;
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -1,13 +1,20 @@
 package com.abhijeet.chat_application.config;
 
-import org.springframework.cache.CacheManager;
+import com.abhijeet.chat_application.service.FriendshipIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
@@ -16,17 +23,56 @@ import java.time.Duration;
 @EnableCaching
 public class RedisConfig {
 
+        @Value("${chat.cache.codec:json}")
+        private String codec;
+
+        @Value("${chat.cache.compression-threshold-bytes:1024}")
+        private int compressionThreshold;
+
+        @Value("${chat.cache.local.max-size:10000}")
+        private long localMaxSize;
+
+        @Value("${chat.cache.local.ttl-seconds:60}")
+        private long localTtlSeconds;
+
         @Bean
-        public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+        public TieredCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                        StringRedisTemplate stringRedisTemplate, ObjectProvider<MeterRegistry> meterRegistry) {
                 RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
                                 .entryTtl(Duration.ofHours(1))
                                 .serializeKeysWith(
                                                 RedisSerializationContext.SerializationPair
                                                                 .fromSerializer(new StringRedisSerializer()))
+                                .serializeValuesWith(RedisSerializationContext.SerializationPair
+                                                .fromSerializer(valueSerializer()))
                                 .disableCachingNullValues();
 
-                return RedisCacheManager.builder(redisConnectionFactory)
+                RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
                                 .cacheDefaults(config)
                                 .build();
+                redisCacheManager.afterPropertiesSet();
+
+                // Caffeine near cache in front of Redis, kept coherent across nodes over pub/sub
+                return new TieredCacheManager(redisCacheManager, stringRedisTemplate, meterRegistry.getIfAvailable(),
+                                localMaxSize, Duration.ofSeconds(localTtlSeconds));
+        }
+
+        // "jdk" keeps the previous JDK serialization, e.g. while rolling back a deploy
+        private RedisSerializer<Object> valueSerializer() {
+                if ("jdk".equalsIgnoreCase(codec)) {
+                        return RedisSerializer.java();
+                }
+                return new CompactCacheSerializer(compressionThreshold);
+        }
+
+        @Bean
+        public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+                        RedisConnectionFactory redisConnectionFactory, TieredCacheManager cacheManager,
+                        FriendshipIndex friendshipIndex) {
+                RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+                container.setConnectionFactory(redisConnectionFactory);
+                container.addMessageListener(cacheManager, new ChannelTopic(TieredCacheManager.CHANNEL));
+                container.addMessageListener(friendshipIndex, new ChannelTopic(FriendshipIndex.CHANNEL));
+                return container;
         }
 }
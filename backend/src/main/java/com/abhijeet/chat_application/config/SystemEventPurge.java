@@ -0,0 +1,85 @@
+package com.abhijeet.chat_application.config;
+
+import com.abhijeet.chat_application.entity.MaintenanceMarker;
+import com.abhijeet.chat_application.entity.id.TimeOrderedIds;
+import com.abhijeet.chat_application.repository.MaintenanceMarkerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * One-off removal of JOIN/LEAVE rows written by earlier versions, which now
+ * live only in the activity log.
+ *
+ * Runs in the background once the application is ready and walks
+ * chat_messages once in id order, a few thousand rows per statement, so no
+ * statement scans the whole table or holds long locks. When the walk
+ * completes a MaintenanceMarker records it, and later starts skip the purge
+ * with a single primary-key lookup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SystemEventPurge {
+
+    static final String MARKER = "purge-system-events";
+
+    private static final int BATCH_SIZE = 5000;
+
+    // Upper end of the next batch: the id BATCH_SIZE rows past the previous one. The timestamp
+    // bound, derived from the previous id, lets Postgres skip partitions already walked
+    private static final String NEXT_BOUND_SQL = """
+            SELECT max(id) FROM (
+                SELECT id FROM chat_messages WHERE id > ? AND timestamp >= ? ORDER BY id LIMIT ?
+            ) batch
+            """;
+    private static final String PURGE_SQL = """
+            DELETE FROM chat_messages
+            WHERE id > ? AND id <= ? AND timestamp >= ? AND type IN ('JOIN', 'LEAVE')
+            """;
+
+    // Rows take their timestamp from the clock that issued their id; allow for skew between nodes
+    private static final long CLOCK_SLACK_MILLIS = 60_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MaintenanceMarkerRepository maintenanceMarkerRepository;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeInBackground() {
+        try {
+            purge();
+        } catch (Exception e) {
+            // No marker was written, so the next start walks the table again
+            log.error("Purging JOIN/LEAVE rows failed", e);
+        }
+    }
+
+    void purge() {
+        if (maintenanceMarkerRepository.existsById(MARKER)) {
+            return;
+        }
+
+        long purged = 0;
+        long afterId = -1L;
+        while (true) {
+            Timestamp from = Timestamp.valueOf(TimeOrderedIds.issuedNotBefore(afterId, CLOCK_SLACK_MILLIS));
+            List<Long> bound = jdbcTemplate.queryForList(NEXT_BOUND_SQL, Long.class, afterId, from, BATCH_SIZE);
+            Long upTo = bound.isEmpty() ? null : bound.get(0);
+            if (upTo == null) {
+                break;
+            }
+            purged += jdbcTemplate.update(PURGE_SQL, afterId, upTo, from);
+            afterId = upTo;
+        }
+        maintenanceMarkerRepository.save(MaintenanceMarker.completedNow(MARKER));
+        log.info("Purged {} JOIN/LEAVE rows from chat_messages", purged);
+    }
+}
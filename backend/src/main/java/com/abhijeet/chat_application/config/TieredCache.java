@@ -0,0 +1,214 @@
+package com.abhijeet.chat_application.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache with an in-process near cache (L1) in front of a shared Redis cache (L2).
+ *
+ * Reads try L1 first and fill it from L2. Writes and evictions go to both
+ * levels. Evictions, and writes that change the value this node held, are
+ * announced to the other nodes, which drop their L1 copy. A write that fills
+ * a key L2 did not hold, through putIfAbsent or a loader, is not announced:
+ * no node can hold an L1 copy of it.
+ * L1 entries are keyed by the string form of the key, the same form Redis
+ * stores and the invalidation messages carry.
+ *
+ * An L1 value is one instance shared by every caller on the node, so lists,
+ * sets and maps are held as unmodifiable copies and the element types cached
+ * here must themselves be immutable.
+ */
+public class TieredCache implements org.springframework.cache.Cache {
+
+    private final String name;
+    private final Cache<String, Object> local;
+    private final org.springframework.cache.Cache remote;
+    private final TieredCacheManager manager;
+
+    final LongAdder localHits = new LongAdder();
+    final LongAdder localMisses = new LongAdder();
+    final LongAdder remoteHits = new LongAdder();
+    final LongAdder remoteMisses = new LongAdder();
+
+    TieredCache(String name, Cache<String, Object> local, org.springframework.cache.Cache remote,
+            TieredCacheManager manager) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = String.valueOf(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            localHits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        localMisses.increment();
+
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        Object value = shareable(wrapper.get());
+        local.put(localKey, value);
+        return new SimpleValueWrapper(value);
+    }
+
+    /**
+     * Values for several keys at once, keyed as given. Keys missing from L1
+     * are read from L2 in a single round trip; keys found in neither level
+     * are left out.
+     */
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> found = new HashMap<>();
+        List<Object> missing = new ArrayList<>();
+        List<String> missingKeys = new ArrayList<>();
+        for (Object key : keys) {
+            Object value = local.getIfPresent(String.valueOf(key));
+            if (value != null) {
+                localHits.increment();
+                found.put(key, value);
+            } else {
+                localMisses.increment();
+                missing.add(key);
+                missingKeys.add(String.valueOf(key));
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        List<Object> values = manager.multiGet(remote, missingKeys);
+        for (int i = 0; i < missing.size(); i++) {
+            if (values.get(i) == null) {
+                remoteMisses.increment();
+                continue;
+            }
+            remoteHits.increment();
+            Object value = shareable(values.get(i));
+            local.put(missingKeys.get(i), value);
+            found.put(missing.get(i), value);
+        }
+        return found;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value = (T) shareable(remote.get(key, valueLoader));
+        if (value != null) {
+            local.put(String.valueOf(key), value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String localKey = String.valueOf(key);
+        Object previous = local.getIfPresent(localKey);
+        remote.put(key, value);
+        if (value != null) {
+            // The caller keeps its own instance; L1 holds a copy it cannot change
+            local.put(localKey, shareable(value));
+        } else {
+            local.invalidate(localKey);
+        }
+        // Rewriting the value this node already held changes nothing for the other nodes
+        if (previous == null || !previous.equals(value)) {
+            manager.publishEviction(name, localKey);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String localKey = String.valueOf(key);
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        if (existing != null && existing.get() != null) {
+            Object current = shareable(existing.get());
+            local.put(localKey, current);
+            return new SimpleValueWrapper(current);
+        }
+        if (value != null) {
+            local.put(localKey, shareable(value));
+        }
+        return null;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(String.valueOf(key));
+        manager.publishEviction(name, String.valueOf(key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        manager.publishEviction(name, null);
+    }
+
+    // Collections are copied into unmodifiable ones so no caller can change what others read from L1
+    private static Object shareable(Object value) {
+        if (value instanceof List<?> list) {
+            return Collections.unmodifiableList(new ArrayList<>(list));
+        }
+        if (value instanceof Set<?> set) {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(set));
+        }
+        if (value instanceof Map<?, ?> map) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(map));
+        }
+        return value;
+    }
+
+    // Applies an eviction announced by another node to this node's L1 only
+    void evictLocal(String key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.abhijeet.chat_application.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Cache manager that puts a size-bounded Caffeine near cache in front of every
+ * Redis cache.
+ *
+ * Evictions are published on the chat:cache-invalidation channel so every
+ * node drops its local copy. The short local TTL bounds staleness should a
+ * node miss an invalidation message, e.g. while reconnecting to Redis.
+ * Hits and misses are counted per level as cache.tiered.gets.
+ */
+@Slf4j
+public class TieredCacheManager implements CacheManager, MessageListener {
+
+    public static final String CHANNEL = "chat:cache-invalidation";
+
+    // Separates node id, cache name and key in an invalidation message
+    private static final char SEPARATOR = '\n';
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long localMaxSize;
+    private final Duration localTtl;
+    private final ConcurrentMap<String, TieredCache> caches = new ConcurrentHashMap<>();
+
+    public TieredCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+            MeterRegistry meterRegistry, long localMaxSize, Duration localTtl) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TieredCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> createCache(n, remote));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    private TieredCache createCache(String name, Cache remote) {
+        TieredCache cache = new TieredCache(name,
+                Caffeine.newBuilder().maximumSize(localMaxSize).expireAfterWrite(localTtl).build(), remote, this);
+        if (meterRegistry != null) {
+            registerCounter(cache, "l1", "hit", c -> c.localHits);
+            registerCounter(cache, "l1", "miss", c -> c.localMisses);
+            registerCounter(cache, "l2", "hit", c -> c.remoteHits);
+            registerCounter(cache, "l2", "miss", c -> c.remoteMisses);
+        }
+        return cache;
+    }
+
+    private void registerCounter(TieredCache cache, String level, String result,
+            Function<TieredCache, LongAdder> counter) {
+        ToDoubleFunction<TieredCache> value = c -> counter.apply(c).sum();
+        FunctionCounter.builder("cache.tiered.gets", cache, value)
+                .description("Tiered cache lookups by level and result")
+                .tags("cache", cache.getName(), "level", level, "result", result)
+                .register(meterRegistry);
+    }
+
+    // L2 values for the keys, in key order with null for a miss: one MGET when L2 is Redis
+    List<Object> multiGet(Cache remote, List<String> keys) {
+        List<Object> values = new ArrayList<>(keys.size());
+        if (!(remote instanceof RedisCache redisCache)) {
+            for (String key : keys) {
+                Cache.ValueWrapper wrapper = remote.get(key);
+                values.add(wrapper != null ? wrapper.get() : null);
+            }
+            return values;
+        }
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        String prefix = config.getKeyPrefixFor(redisCache.getName());
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < rawKeys.length; i++) {
+            rawKeys[i] = (prefix + keys.get(i)).getBytes(StandardCharsets.UTF_8);
+        }
+        List<byte[]> raw = redisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] bytes = raw != null ? raw.get(i) : null;
+            values.add(bytes != null ? config.getValueSerializationPair().read(ByteBuffer.wrap(bytes)) : null);
+        }
+        return values;
+    }
+
+    void publishEviction(String cacheName, String key) {
+        String message = nodeId + SEPARATOR + cacheName + SEPARATOR + (key != null ? key : "");
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            // Other nodes fall back to the local TTL for this entry
+            log.warn("Failed to publish eviction of {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int first = body.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : body.indexOf(SEPARATOR, first + 1);
+        if (second < 0) {
+            log.warn("Dropping malformed cache invalidation message");
+            return;
+        }
+        if (nodeId.equals(body.substring(0, first))) {
+            return;
+        }
+        TieredCache cache = caches.get(body.substring(first + 1, second));
+        if (cache != null) {
+            String key = body.substring(second + 1);
+            cache.evictLocal(key.isEmpty() ? null : key);
+        }
+    }
+}
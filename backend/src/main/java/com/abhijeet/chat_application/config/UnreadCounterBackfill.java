@@ -0,0 +1,50 @@
+package com.abhijeet.chat_application.config;
+
+import com.abhijeet.chat_application.entity.MaintenanceMarker;
+import com.abhijeet.chat_application.repository.MaintenanceMarkerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Seeds unread_counters from existing unread messages the first time the
+ * table is introduced. Skipped if the table already holds any row. Once the
+ * seed has run a MaintenanceMarker records it, so later starts skip the scan
+ * of chat_messages even while no counter exists yet.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UnreadCounterBackfill implements ApplicationRunner {
+
+    static final String MARKER = "backfill-unread-counters";
+
+    private static final String BACKFILL_SQL = """
+            INSERT INTO unread_counters (user_id, chat_room_id, unread_count)
+            SELECT p.user_id, m.chat_room_id, COUNT(*)
+            FROM chat_messages m
+            JOIN chat_room_participants p ON p.chat_room_id = m.chat_room_id
+            WHERE m.sender_id <> p.user_id AND m.status IN ('SENT', 'DELIVERED')
+              AND NOT EXISTS (SELECT 1 FROM unread_counters)
+            GROUP BY p.user_id, m.chat_room_id
+            ON CONFLICT (user_id, chat_room_id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MaintenanceMarkerRepository maintenanceMarkerRepository;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (maintenanceMarkerRepository.existsById(MARKER)) {
+            return;
+        }
+        int inserted = jdbcTemplate.update(BACKFILL_SQL);
+        maintenanceMarkerRepository.save(MaintenanceMarker.completedNow(MARKER));
+        if (inserted > 0) {
+            log.info("Seeded {} unread counters from existing messages", inserted);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.abhijeet.chat_application.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
@@ -11,20 +15,28 @@ import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 import lombok.RequiredArgsConstructor;
-import com.abhijeet.chat_application.security.JwtUtils;
+import lombok.extern.slf4j.Slf4j;
+import com.abhijeet.chat_application.security.VerifiedTokenCache;
 
+import java.security.Principal;
+import java.util.List;
+
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
-    private final JwtUtils jwtUtils;
-    private final UserDetailsService userDetailsService;
+    // Per-user topics, which only that user may subscribe to
+    private static final List<String> PRIVATE_TOPIC_PREFIXES = List.of("/topic/presence.", "/topic/user.");
+
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final ObjectProvider<ClusterBrokerRelay> clusterBrokerRelay;
+    private final Environment environment;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -37,6 +49,9 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Also register a raw WebSocket endpoint (without SockJS)
         registry.addEndpoint("/ws-raw")
                 .setAllowedOriginPatterns("*");
+        // Hand each session's frames to the inbound channel one at a time, so a pooled or
+        // virtual-thread executor cannot reorder them before they reach the room lanes
+        registry.setPreserveReceiveOrder(true);
     }
 
     @Override
@@ -47,10 +62,36 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Enable a simple memory-based message broker to carry the greeting messages
         // back to the client on destinations prefixed with "/topic"
         registry.enableSimpleBroker("/topic");
+        // In cluster mode, mirror broker traffic to the other nodes through Redis
+        ClusterBrokerRelay relay = clusterBrokerRelay.getIfAvailable();
+        if (relay != null) {
+            registry.configureBrokerChannel().interceptors(relay);
+        }
+        // The broker channel stays synchronous so broadcasts leave in room-lane order,
+        // and each session's outbound messages are sent in the order they were published
+        registry.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(virtualThreadExecutor("ws-outbound-"));
+        }
+    }
+
+    // Used instead of the default fixed thread pools when spring.threads.virtual.enabled=true on Java 21+,
+    // so handlers blocked on the database no longer exhaust the channel threads
+    private SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(virtualThreadExecutor("ws-inbound-"));
+        }
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -61,22 +102,42 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     if (authHeader != null && authHeader.startsWith("Bearer ")) {
                         String jwt = authHeader.substring(7);
                         try {
-                            String username = jwtUtils.extractUsername(jwt);
-                            if (username != null) {
-                                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                                if (jwtUtils.isTokenValid(jwt, userDetails)) {
-                                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                            userDetails, null, userDetails.getAuthorities());
-                                    accessor.setUser(authentication);
-                                }
+                            UserDetails userDetails = verifiedTokenCache.authenticate(jwt);
+                            if (userDetails != null) {
+                                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                                        userDetails, null, userDetails.getAuthorities());
+                                accessor.setUser(authentication);
                             }
                         } catch (Exception e) {
                             // Invalid token
                         }
                     }
                 }
+                if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                        && !maySubscribe(accessor.getUser(), accessor.getDestination())) {
+                    log.warn("Subscription to {} blocked for {}", accessor.getDestination(),
+                            accessor.getUser() != null ? accessor.getUser().getName() : "unauthenticated session");
+                    return null;
+                }
                 return message;
             }
         });
     }
+
+    // A per-user topic is open only to the user it belongs to; other topics are not restricted here
+    static boolean maySubscribe(Principal user, String destination) {
+        if (destination == null) {
+            return true;
+        }
+        // The simple broker matches patterns, so a wildcard could cover another user's topic
+        if (destination.indexOf('*') >= 0 || destination.indexOf('{') >= 0) {
+            return false;
+        }
+        for (String prefix : PRIVATE_TOPIC_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                return user != null && destination.equals(prefix + user.getName());
+            }
+        }
+        return true;
+    }
 }
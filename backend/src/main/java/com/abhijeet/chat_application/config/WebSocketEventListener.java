@@ -2,25 +2,27 @@ package com.abhijeet.chat_application.config;
 
 import com.abhijeet.chat_application.entity.ChatMessage;
 import com.abhijeet.chat_application.entity.User;
-import com.abhijeet.chat_application.service.ChatMessageService;
+import com.abhijeet.chat_application.security.SessionPrincipal;
+import com.abhijeet.chat_application.service.ActivityLog;
+import com.abhijeet.chat_application.service.PresenceBroadcaster;
+import com.abhijeet.chat_application.service.PresenceExpiredEvent;
+import com.abhijeet.chat_application.service.PresenceRegistry;
 import com.abhijeet.chat_application.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
-import java.time.LocalDateTime;
-
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class WebSocketEventListener {
 
-    private final SimpMessageSendingOperations messagingTemplate;
-    private final ChatMessageService chatMessageService;
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final ActivityLog activityLog;
     private final UserService userService;
 
     @EventListener
@@ -30,21 +32,28 @@ public class WebSocketEventListener {
 
         if (username != null) {
             log.info("user disconnected: {}", username);
-            try {
-                User user = userService.getUserByUsername(username);
-                userService.disconnect(user);
-
-                var chatMessage = ChatMessage.builder()
-                        .type(ChatMessage.MessageType.LEAVE)
-                        .sender(user)
-                        .timestamp(LocalDateTime.now())
-                        .build();
-
-                chatMessageService.save(chatMessage);
-                messagingTemplate.convertAndSend("/topic/public", chatMessage);
-            } catch (Exception e) {
-                log.warn("Disconnected user not found in DB: {}", username);
+            // Other tabs or devices may still be connected; only the last session announces LEAVE
+            if (!presenceRegistry.disconnect(username, event.getSessionId())) {
+                return;
+            }
+            User user = SessionPrincipal.user(event.getUser());
+            if (user == null) {
+                log.warn("Disconnected session has no authenticated user: {}", username);
+                return;
             }
+            activityLog.record(ChatMessage.MessageType.LEAVE, username);
+            // Friends hear about it once the offline grace period has passed without a reconnect
+            presenceBroadcaster.offline(user);
+        }
+    }
+
+    // Users whose sessions were on a node that died never get a disconnect event
+    @EventListener
+    public void handlePresenceExpired(PresenceExpiredEvent event) {
+        for (User user : userService.getUsersByUsernames(event.usernames())) {
+            log.info("user timed out with their node: {}", user.getUsername());
+            activityLog.record(ChatMessage.MessageType.LEAVE, user.getUsername());
+            presenceBroadcaster.offline(user);
         }
     }
 }
@@ -1,25 +1,30 @@
 package com.abhijeet.chat_application.controller;
 
+import com.abhijeet.chat_application.dto.ChatMessageDto;
 import com.abhijeet.chat_application.entity.ChatMessage;
 import com.abhijeet.chat_application.entity.ChatRoom;
 import com.abhijeet.chat_application.entity.User;
-import com.abhijeet.chat_application.exception.ResourceNotFoundException;
 import com.abhijeet.chat_application.repository.ChatRoomRepository;
+import com.abhijeet.chat_application.security.SessionPrincipal;
+import com.abhijeet.chat_application.service.ActivityLog;
 import com.abhijeet.chat_application.service.ChatMessageService;
+import com.abhijeet.chat_application.service.DeliveryAckService;
 import com.abhijeet.chat_application.service.FriendshipService;
-import com.abhijeet.chat_application.service.UserService;
+import com.abhijeet.chat_application.service.MessageFanoutService;
+import com.abhijeet.chat_application.service.PresenceBroadcaster;
+import com.abhijeet.chat_application.service.PresenceRegistry;
+import com.abhijeet.chat_application.service.RoomExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
 import java.time.LocalDateTime;
-
-import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.List;
 
 @Controller
 @RequiredArgsConstructor
@@ -27,31 +32,38 @@ import org.springframework.transaction.annotation.Transactional;
 public class ChatController {
 
     private final ChatMessageService chatMessageService;
-    private final SimpMessageSendingOperations messagingTemplate;
-    private final UserService userService;
+    private final MessageFanoutService messageFanoutService;
     private final ChatRoomRepository chatRoomRepository;
     private final FriendshipService friendshipService;
+    private final RoomExecutor roomExecutor;
+    private final DeliveryAckService deliveryAckService;
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final ActivityLog activityLog;
 
-    @Transactional
     @MessageMapping("/chat.sendMessage")
-    public void sendMessage(@Payload ChatMessageRequest request) {
-        User sender;
-        try {
-            sender = userService.getUserByUsername(request.getSenderUsername());
-        } catch (ResourceNotFoundException e) {
-            log.error("Sender not found '{}': {}", request.getSenderUsername(), e.getMessage());
+    public void sendMessage(@Payload ChatMessageRequest request, Principal principal) {
+        // The sender is whoever authenticated this session, never the payload's claim
+        User sender = SessionPrincipal.user(principal);
+        if (sender == null) {
+            log.warn("Message rejected: WebSocket session is not authenticated");
             return;
         }
+        // Serialize all work for this room on its lane so messages persist and broadcast in order
+        roomExecutor.execute(request.getChatRoomId(), () -> handleSendMessage(request, sender));
+    }
+
+    private void handleSendMessage(ChatMessageRequest request, User sender) {
         ChatRoom chatRoom = null;
         if (request.getChatRoomId() != null) {
-            chatRoom = chatRoomRepository.findById(request.getChatRoomId()).orElse(null);
+            chatRoom = chatRoomRepository.findWithParticipantsById(request.getChatRoomId()).orElse(null);
         }
 
         // Enforce friendship check for 1-on-1 chats
         if (chatRoom != null && !chatRoom.isGroupChat()) {
             for (User participant : chatRoom.getParticipants()) {
                 if (!participant.getUsername().equals(sender.getUsername())) {
-                    if (!friendshipService.areFriends(sender.getUsername(), participant.getUsername())) {
+                    if (!friendshipService.areFriends(sender.getId(), participant.getId())) {
                         log.warn("Message blocked: {} is not friends with {}", sender.getUsername(),
                                 participant.getUsername());
                         return;
@@ -63,7 +75,8 @@ public class ChatController {
         ChatMessage.MessageStatus initialStatus = ChatMessage.MessageStatus.SENT;
         if (chatRoom != null && chatRoom.isGroupChat() == false) {
             for (User participant : chatRoom.getParticipants()) {
-                if (!participant.getUsername().equals(sender.getUsername()) && participant.isOnline()) {
+                if (!participant.getUsername().equals(sender.getUsername())
+                        && presenceRegistry.isOnline(participant.getUsername())) {
                     initialStatus = ChatMessage.MessageStatus.DELIVERED;
                     break;
                 }
@@ -79,82 +92,87 @@ public class ChatController {
                 .status(initialStatus)
                 .build();
 
-        // Save the chat message in the DB
-        chatMessage = chatMessageService.save(chatMessage);
+        // Queue the chat message for batched persistence; broadcast does not wait for the DB
+        if (!chatMessageService.saveAsync(chatMessage)) {
+            log.warn("Message from {} rejected: persistence queue is full", sender.getUsername());
+            return;
+        }
 
+        ChatMessageDto payload = ChatMessageDto.from(chatMessage);
+        if (chatRoom != null && !chatRoom.isGroupChat()) {
+            payload.setParticipants(chatRoom.getParticipants().stream().map(User::getUsername).toList());
+        }
         if (chatRoom != null) {
-            // Provide to a specific chat room topic
-            messagingTemplate.convertAndSend("/topic/chatrooms/" + chatRoom.getId(), chatMessage);
-            // Notify each participant for their sidebar updates (last message, unread
-            // counts)
+            // Provide to a specific chat room topic, and notify each participant for their
+            // sidebar updates (last message, unread counts)
+            List<String> destinations = new ArrayList<>(chatRoom.getParticipants().size() + 1);
+            destinations.add("/topic/chatrooms/" + chatRoom.getId());
             for (User participant : chatRoom.getParticipants()) {
-                messagingTemplate.convertAndSend("/topic/user." + participant.getUsername(), chatMessage);
+                destinations.add("/topic/user." + participant.getUsername());
             }
+            messageFanoutService.send(destinations, payload);
         } else {
             // General public topic
-            messagingTemplate.convertAndSend("/topic/public", chatMessage);
+            messageFanoutService.send("/topic/public", payload);
         }
     }
 
     @MessageMapping("/chat.addUser")
-    @SendTo("/topic/public")
-    public ChatMessage addUser(@Payload ChatMessageRequest request, SimpMessageHeaderAccessor headerAccessor) {
-        User user;
-        try {
-            user = userService.getUserByUsername(request.getSenderUsername());
-        } catch (ResourceNotFoundException e) {
-            log.error("User not found '{}': {}", request.getSenderUsername(), e.getMessage());
-            return null;
+    public void addUser(@Payload ChatMessageRequest request, SimpMessageHeaderAccessor headerAccessor,
+            Principal principal) {
+        User user = SessionPrincipal.user(principal);
+        if (user == null) {
+            log.warn("Join rejected: WebSocket session is not authenticated");
+            return;
         }
-        userService.connect(user);
+        // Counts this session; only the user's first session is announced
+        boolean cameOnline = presenceRegistry.connect(user.getUsername(), headerAccessor.getSessionId());
 
         // Add username in web socket session
         headerAccessor.getSessionAttributes().put("username", user.getUsername());
 
-        // Mark messages as delivered for this user
-        java.util.Map<Long, java.util.List<Long>> roomIdToMessageIds = chatMessageService
-                .markAsDeliveredForUser(user.getUsername());
+        // Mark messages as delivered for this user in the background, without holding up the join
+        deliveryAckService.acknowledgeAsync(user.getUsername());
 
-        for (java.util.Map.Entry<Long, java.util.List<Long>> entry : roomIdToMessageIds.entrySet()) {
-            StatusUpdateMessage statusUpdate = StatusUpdateMessage.builder()
-                    .type(ChatMessage.MessageType.STATUS_UPDATE)
-                    .chatRoomId(entry.getKey())
-                    .messageIds(entry.getValue())
-                    .newStatus(ChatMessage.MessageStatus.DELIVERED)
-                    .build();
-            messagingTemplate.convertAndSend("/topic/chatrooms/" + entry.getKey(), statusUpdate);
+        if (!cameOnline) {
+            // Another tab or device already announced this user
+            return;
         }
 
-        ChatMessage chatMessage = ChatMessage.builder()
-                .sender(user)
-                .type(ChatMessage.MessageType.JOIN)
-                .timestamp(LocalDateTime.now())
-                .build();
-
-        // Save the JOIN message in the DB
-        chatMessage = chatMessageService.save(chatMessage);
-
-        return chatMessage;
+        activityLog.record(ChatMessage.MessageType.JOIN, user.getUsername());
+        // Friends hear about it in the next presence diff
+        presenceBroadcaster.online(user);
     }
 
     @MessageMapping("/chat.readMessages")
-    public void readMessages(@Payload ChatMessageRequest request) {
+    public void readMessages(@Payload ChatMessageRequest request, Principal principal) {
+        User reader = SessionPrincipal.user(principal);
         Long chatRoomId = request.getChatRoomId();
-        String readerUsername = request.getSenderUsername();
 
-        if (chatRoomId != null) {
-            java.util.List<Long> messageIds = chatMessageService.markAsRead(chatRoomId, readerUsername);
+        if (reader != null && chatRoomId != null) {
+            Long lastReadMessageId = request.getLastReadMessageId();
+            roomExecutor.execute(chatRoomId,
+                    () -> handleReadMessages(chatRoomId, reader.getUsername(), lastReadMessageId));
+        }
+    }
 
-            if (!messageIds.isEmpty()) {
-                StatusUpdateMessage statusUpdate = StatusUpdateMessage.builder()
-                        .type(ChatMessage.MessageType.STATUS_UPDATE)
-                        .chatRoomId(chatRoomId)
-                        .messageIds(messageIds)
-                        .newStatus(ChatMessage.MessageStatus.READ)
-                        .build();
+    private void handleReadMessages(Long chatRoomId, String readerUsername, Long lastReadMessageId) {
+        if (!chatRoomRepository.existsByIdAndParticipantsUsername(chatRoomId, readerUsername)) {
+            log.warn("Read receipt blocked: {} is not a participant of room {}", readerUsername, chatRoomId);
+            return;
+        }
+        Long readUpTo = chatMessageService.markAsRead(chatRoomId, readerUsername, lastReadMessageId);
 
-                messagingTemplate.convertAndSend("/topic/chatrooms/" + chatRoomId, statusUpdate);
-            }
+        if (readUpTo != null) {
+            StatusUpdateMessage statusUpdate = StatusUpdateMessage.builder()
+                    .type(ChatMessage.MessageType.STATUS_UPDATE)
+                    .chatRoomId(chatRoomId)
+                    .newStatus(ChatMessage.MessageStatus.READ)
+                    .recipientUsername(readerUsername)
+                    .upToMessageId(readUpTo)
+                    .build();
+
+            messageFanoutService.send("/topic/chatrooms/" + chatRoomId, statusUpdate);
         }
     }
 }
@@ -6,7 +6,10 @@ import lombok.Data;
 @Data
 public class ChatMessageRequest {
     private String content;
+    // Ignored by the server; the sender is taken from the authenticated session
     private String senderUsername;
     private Long chatRoomId;
     private ChatMessage.MessageType type;
+    // For chat.readMessages: newest message the reader has seen; defaults to the room's newest
+    private Long lastReadMessageId;
 }
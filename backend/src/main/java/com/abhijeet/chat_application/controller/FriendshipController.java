@@ -1,7 +1,7 @@
 package com.abhijeet.chat_application.controller;
 
+import com.abhijeet.chat_application.dto.UserDto;
 import com.abhijeet.chat_application.entity.Friendship;
-import com.abhijeet.chat_application.entity.User;
 import com.abhijeet.chat_application.service.FriendshipService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -55,8 +55,8 @@ public class FriendshipController {
      * GET /api/friends?username=alice
      */
     @GetMapping
-    public ResponseEntity<List<User>> getFriends(@RequestParam String username) {
-        return ResponseEntity.ok(friendshipService.getFriends(username));
+    public ResponseEntity<List<UserDto>> getFriends(@RequestParam String username) {
+        return ResponseEntity.ok(friendshipService.getFriends(username).stream().map(UserDto::from).toList());
     }
 
     /**
@@ -1,6 +1,10 @@
 package com.abhijeet.chat_application.controller;
 
-import com.abhijeet.chat_application.entity.ChatMessage;
+import com.abhijeet.chat_application.dto.ChatMessageDto;
+import com.abhijeet.chat_application.dto.MessagePage;
+import com.abhijeet.chat_application.entity.User;
+import com.abhijeet.chat_application.exception.UnauthorizedException;
+import com.abhijeet.chat_application.security.SessionPrincipal;
 import com.abhijeet.chat_application.service.ChatMessageService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -9,7 +13,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -19,17 +25,43 @@ public class MessageController {
     private final ChatMessageService chatMessageService;
 
     @GetMapping
-    public ResponseEntity<List<ChatMessage>> getMessages(@RequestParam(required = false) Long chatRoomId) {
+    public ResponseEntity<List<ChatMessageDto>> getMessages(@RequestParam(required = false) Long chatRoomId) {
         return ResponseEntity.ok(chatMessageService.getMessages(chatRoomId));
     }
 
+    /**
+     * Cursor-paginated history.
+     * GET /api/messages/history?chatRoomId=1&before=...&size=50
+     */
+    @GetMapping("/history")
+    public ResponseEntity<MessagePage> getMessageHistory(
+            @RequestParam(required = false) Long chatRoomId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(chatMessageService.getMessagePage(chatRoomId, before, after, size));
+    }
+
+    /**
+     * Per-member read receipts for a room: username to last read message id.
+     * GET /api/messages/read-cursors?chatRoomId=1
+     */
+    @GetMapping("/read-cursors")
+    public ResponseEntity<Map<String, Long>> getReadCursors(@RequestParam Long chatRoomId, Principal principal) {
+        User user = SessionPrincipal.user(principal);
+        if (user == null) {
+            throw new UnauthorizedException("Read cursors require an authenticated user");
+        }
+        return ResponseEntity.ok(chatMessageService.getReadCursors(chatRoomId, user.getUsername()));
+    }
+
     @GetMapping("/unread-counts")
-    public ResponseEntity<java.util.Map<String, Long>> getUnreadCounts(@RequestParam String username) {
+    public ResponseEntity<Map<String, Long>> getUnreadCounts(@RequestParam String username) {
         return ResponseEntity.ok(chatMessageService.getUnreadCounts(username));
     }
 
     @GetMapping("/last-messages")
-    public ResponseEntity<java.util.Map<String, String>> getLastMessages(@RequestParam String username) {
+    public ResponseEntity<Map<String, String>> getLastMessages(@RequestParam String username) {
         return ResponseEntity.ok(chatMessageService.getLastMessages(username));
     }
 }
@@ -13,4 +13,7 @@ public class StatusUpdateMessage {
     private Long chatRoomId;
     private List<Long> messageIds;
     private ChatMessage.MessageStatus newStatus;
+    // Receipts: every message up to this id that the recipient did not send now has newStatus
+    private String recipientUsername;
+    private Long upToMessageId;
 }
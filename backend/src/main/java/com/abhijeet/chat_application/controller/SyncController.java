@@ -0,0 +1,39 @@
+package com.abhijeet.chat_application.controller;
+
+import com.abhijeet.chat_application.dto.SyncResponse;
+import com.abhijeet.chat_application.entity.User;
+import com.abhijeet.chat_application.exception.UnauthorizedException;
+import com.abhijeet.chat_application.security.SessionPrincipal;
+import com.abhijeet.chat_application.service.SyncService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/sync")
+@RequiredArgsConstructor
+public class SyncController {
+
+    private final SyncService syncService;
+
+    /**
+     * Incremental reconnect sync for the authenticated user.
+     * GET /api/sync?since=123456789
+     */
+    @GetMapping
+    public ResponseEntity<SyncResponse> sync(
+            @RequestParam(required = false) Long since,
+            Principal principal) {
+        // Only ever the caller's own stream, never a username taken from the request
+        User user = SessionPrincipal.user(principal);
+        if (user == null) {
+            throw new UnauthorizedException("Sync requires an authenticated user");
+        }
+        return ResponseEntity.ok(syncService.sync(user.getUsername(), since));
+    }
+}
@@ -1,14 +1,19 @@
 package com.abhijeet.chat_application.controller;
 
-import com.abhijeet.chat_application.entity.User;
+import com.abhijeet.chat_application.dto.ActivityEvent;
+import com.abhijeet.chat_application.dto.UserDto;
 import com.abhijeet.chat_application.repository.UserRepository;
+import com.abhijeet.chat_application.service.ActivityLog;
+import com.abhijeet.chat_application.service.PresenceRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/users")
@@ -16,9 +21,24 @@ import java.util.List;
 public class UserController {
 
     private final UserRepository userRepository;
+    private final PresenceRegistry presenceRegistry;
+    private final ActivityLog activityLog;
 
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        return ResponseEntity.ok(userRepository.findAll());
+    public ResponseEntity<List<UserDto>> getAllUsers() {
+        List<UserDto> users = userRepository.findAll().stream().map(UserDto::from).toList();
+        // Live presence; the stored flag is only written in periodic batches
+        List<String> usernames = users.stream().map(UserDto::getUsername).toList();
+        Set<String> online = presenceRegistry.onlineAmong(usernames);
+        users.forEach(user -> user.setOnline(online.contains(user.getUsername())));
+        return ResponseEntity.ok(users);
+    }
+
+    /**
+     * Recent joins and leaves, newest first.
+     */
+    @GetMapping("/activity")
+    public ResponseEntity<List<ActivityEvent>> getRecentActivity(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(activityLog.recent(limit));
     }
 }
@@ -0,0 +1,22 @@
+package com.abhijeet.chat_application.dto;
+
+import com.abhijeet.chat_application.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user joining or leaving, as kept in the recent-activity log.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityEvent {
+    private ChatMessage.MessageType type;
+    private String username;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,45 @@
+package com.abhijeet.chat_application.dto;
+
+import com.abhijeet.chat_application.entity.ChatMessage;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Wire form of a chat message for STOMP broadcasts and REST responses.
+ * Carries only ids and usernames instead of the room and sender entities.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatMessageDto {
+    private Long id;
+    private Long chatRoomId;
+    private String senderUsername;
+    private String content;
+    private ChatMessage.MessageType type;
+    private ChatMessage.MessageStatus status;
+    private LocalDateTime timestamp;
+    // Usernames of both members, on broadcasts in 1:1 rooms only, so a client can
+    // tell who the conversation is with when the room is not open
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> participants;
+
+    public static ChatMessageDto from(ChatMessage message) {
+        return ChatMessageDto.builder()
+                .id(message.getId())
+                .chatRoomId(message.getChatRoom() != null ? message.getChatRoom().getId() : null)
+                .senderUsername(message.getSender() != null ? message.getSender().getUsername() : null)
+                .content(message.getContent())
+                .type(message.getType())
+                .status(message.getStatus())
+                .timestamp(message.getTimestamp())
+                .build();
+    }
+}
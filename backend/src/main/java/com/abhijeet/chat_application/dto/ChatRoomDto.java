@@ -0,0 +1,35 @@
+package com.abhijeet.chat_application.dto;
+
+import com.abhijeet.chat_application.entity.ChatRoom;
+import com.abhijeet.chat_application.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatRoomDto {
+    private Long id;
+    private String name;
+    private boolean groupChat;
+    private List<String> participants;
+    private String lastMessage;
+    private LocalDateTime lastMessageTimestamp;
+
+    public static ChatRoomDto from(ChatRoom room) {
+        return ChatRoomDto.builder()
+                .id(room.getId())
+                .name(room.getName())
+                .groupChat(room.isGroupChat())
+                .participants(room.getParticipants().stream().map(User::getUsername).toList())
+                .lastMessage(room.getLastMessage())
+                .lastMessageTimestamp(room.getLastMessageTimestamp())
+                .build();
+    }
+}
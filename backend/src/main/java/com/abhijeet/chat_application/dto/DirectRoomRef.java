@@ -0,0 +1,23 @@
+package com.abhijeet.chat_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A user's 1:1 room and the other participant in it. Read-only, since cached
+ * instances are shared between callers.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DirectRoomRef {
+    private Long chatRoomId;
+    private String username;
+}
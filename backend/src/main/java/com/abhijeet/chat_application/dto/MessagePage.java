@@ -0,0 +1,23 @@
+package com.abhijeet.chat_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of message history, oldest message first.
+ * {@code before} fetches older messages and {@code after} fetches newer ones;
+ * either is null when there is nothing further in that direction.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MessagePage {
+    private List<ChatMessageDto> messages;
+    private String before;
+    private String after;
+}
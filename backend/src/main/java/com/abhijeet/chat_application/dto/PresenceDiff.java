@@ -0,0 +1,25 @@
+package com.abhijeet.chat_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Presence changes among one user's friends since the previous diff.
+ * {@code timestamp} doubles as the last-seen time of the users in {@code offline}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresenceDiff {
+    @Builder.Default
+    private String type = "PRESENCE";
+    private List<String> online;
+    private List<String> offline;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,28 @@
+package com.abhijeet.chat_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything a reconnecting client missed since its watermark.
+ * {@code watermark} is the id to pass as {@code since} on the next call;
+ * when {@code hasMore} is true the client should call again right away.
+ * The watermark can trail the newest returned message, so a message may be
+ * returned by more than one call; clients dedupe by id.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SyncResponse {
+    private List<ChatMessageDto> messages;
+    private List<ChatRoomDto> rooms;
+    private Map<String, Long> unreadCounts;
+    private Long watermark;
+    private boolean hasMore;
+}
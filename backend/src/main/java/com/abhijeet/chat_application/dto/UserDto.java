@@ -0,0 +1,37 @@
+package com.abhijeet.chat_application.dto;
+
+import com.abhijeet.chat_application.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserDto {
+    private Long id;
+    private String username;
+    private String fullName;
+    private String profilePictureUrl;
+    private String aboutStatus;
+    private String publicKey;
+    private boolean online;
+    private LocalDateTime lastSeen;
+
+    public static UserDto from(User user) {
+        return UserDto.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .fullName(user.getFullName())
+                .profilePictureUrl(user.getProfilePictureUrl())
+                .aboutStatus(user.getAboutStatus())
+                .publicKey(user.getPublicKey())
+                .online(user.isOnline())
+                .lastSeen(user.getLastSeen())
+                .build();
+    }
+}
@@ -2,6 +2,7 @@ package com.abhijeet.chat_application.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import com.abhijeet.chat_application.entity.id.TimeOrderedId;
 
 import java.time.LocalDateTime;
 
@@ -13,19 +14,20 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "chat_messages", indexes = {
         @Index(name = "idx_chat_timestamp", columnList = "chat_room_id, timestamp"),
+        @Index(name = "idx_chat_room_id", columnList = "chat_room_id, id"),
         @Index(name = "idx_sender_status", columnList = "sender_id, status")
 })
 public class ChatMessage implements java.io.Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "chat_room_id")
     private ChatRoom chatRoom;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_id", nullable = false)
     private User sender;
 
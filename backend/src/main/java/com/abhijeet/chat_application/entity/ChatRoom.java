@@ -2,6 +2,7 @@ package com.abhijeet.chat_application.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,7 +14,10 @@ import java.util.List;
 @NoArgsConstructor
 @Builder
 @Entity
-@Table(name = "chat_rooms")
+@Table(name = "chat_rooms", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_chat_room_direct_key", columnNames = { "direct_key" })
+})
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 public class ChatRoom implements java.io.Serializable {
 
     @Id
@@ -25,7 +29,11 @@ public class ChatRoom implements java.io.Serializable {
     @Builder.Default
     private boolean isGroupChat = false;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // "minUserId:maxUserId" for 1:1 rooms, null for groups; unique so each pair has one room
+    @Column(name = "direct_key")
+    private String directKey;
+
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "chat_room_participants", joinColumns = @JoinColumn(name = "chat_room_id"), inverseJoinColumns = @JoinColumn(name = "user_id"))
     @Builder.Default
     private List<User> participants = new ArrayList<>();
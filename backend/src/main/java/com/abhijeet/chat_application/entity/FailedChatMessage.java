@@ -0,0 +1,45 @@
+package com.abhijeet.chat_application.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A chat message the write-behind pipeline could not insert, parked with the
+ * error instead of being dropped. Columns mirror chat_messages without its
+ * foreign keys, so a row rejected for a missing room or sender still fits.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "chat_messages_dead_letter")
+public class FailedChatMessage {
+
+    @Id
+    private Long id;
+
+    @Column(name = "chat_room_id")
+    private Long chatRoomId;
+
+    @Column(name = "sender_id")
+    private Long senderId;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    private String type;
+
+    private String status;
+
+    private LocalDateTime timestamp;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt;
+}
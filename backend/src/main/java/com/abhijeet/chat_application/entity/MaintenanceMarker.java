@@ -0,0 +1,31 @@
+package com.abhijeet.chat_application.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records that a one-off maintenance task has completed, so later starts can
+ * skip it with a single primary-key lookup.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "maintenance_markers")
+public class MaintenanceMarker {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(name = "completed_at", nullable = false)
+    private LocalDateTime completedAt;
+
+    public static MaintenanceMarker completedNow(String name) {
+        return new MaintenanceMarker(name, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,40 @@
+package com.abhijeet.chat_application.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Highest message id a participant has read in a room. Every message in the
+ * room up to this id counts as read by that participant, which gives
+ * per-member receipts in group chats without touching message rows.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "read_cursors")
+public class ReadCursor {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "last_read_message_id", nullable = false)
+    private long lastReadMessageId;
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    @Embeddable
+    public static class Key implements java.io.Serializable {
+
+        @Column(name = "user_id")
+        private Long userId;
+
+        @Column(name = "chat_room_id")
+        private Long chatRoomId;
+    }
+}
@@ -0,0 +1,40 @@
+package com.abhijeet.chat_application.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Number of messages in a room the user has not read yet. Incremented when
+ * messages are persisted and reset when the user reads the room, so unread
+ * counts are read per room instead of counted over chat_messages.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "unread_counters")
+public class UnreadCounter {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "unread_count", nullable = false)
+    private long unreadCount;
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    @Embeddable
+    public static class Key implements java.io.Serializable {
+
+        @Column(name = "user_id")
+        private Long userId;
+
+        @Column(name = "chat_room_id")
+        private Long chatRoomId;
+    }
+}
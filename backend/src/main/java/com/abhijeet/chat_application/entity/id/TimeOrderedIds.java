@@ -0,0 +1,113 @@
+package com.abhijeet.chat_application.entity.id;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+
+/**
+ * Time-ordered 53-bit id source shared by the Hibernate generator and code
+ * that needs an id before the row is written.
+ *
+ * Layout: 40 bits of milliseconds since 2025-01-01 UTC, 5 bits of node id and
+ * 8 bits of per-millisecond sequence. 53 bits keep ids exact as JavaScript
+ * numbers on the frontend. Each node can issue 256 ids per millisecond and
+ * waits for the next millisecond when that runs out.
+ *
+ * The node id is assigned once at startup by NodeIdAssigner, from
+ * chat.node-id or, in cluster mode, from a lease in Redis. Until then it is 0,
+ * which is only safe while a single node is running.
+ */
+public final class TimeOrderedIds {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 5;
+    private static final int SEQUENCE_BITS = 8;
+    public static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    // Sequential ids from before time-ordered ids all decode to the first day after the epoch
+    private static final long FIRST_TIME_ORDERED_ID = lowestIdAt(EPOCH_MILLIS + 86_400_000L);
+    private static final LocalDateTime UNBOUNDED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static long nodeId = 0L;
+    private static long lastMillis = -1L;
+    private static long sequence = 0L;
+
+    private TimeOrderedIds() {
+    }
+
+    public static synchronized long next() {
+        long now = System.currentTimeMillis();
+        if (now < lastMillis) {
+            // Clock moved backwards; keep issuing from the last seen millisecond
+            now = lastMillis;
+        }
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                while (now <= lastMillis) {
+                    Thread.onSpinWait();
+                    now = System.currentTimeMillis();
+                }
+            }
+        } else {
+            sequence = 0L;
+        }
+        lastMillis = now;
+        return ((now - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    public static synchronized void setNodeId(long id) {
+        if (id < 0 || id > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE + ", got " + id);
+        }
+        nodeId = id;
+    }
+
+    public static synchronized long nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Epoch milliseconds at which the id was issued.
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * The smallest id any node can issue at the given epoch milliseconds, so
+     * every id issued earlier is below it.
+     */
+    public static long lowestIdAt(long epochMillis) {
+        return Math.max(0L, epochMillis - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    /**
+     * Lower bound for the timestamp of any row whose id is above the given
+     * one, for range conditions that let Postgres skip older partitions. Rows
+     * take their timestamp from the clock that issued their id, so the bound
+     * is the id's issue time less {@code slackMillis}. Ids from before
+     * time-ordered ids give no bound (1970-01-01).
+     *
+     * Timestamps are local wall-clock time, which repeats an hour when the
+     * clocks go back; a bound just before that falls back to where the
+     * repeated hour starts, so rows written during it are not cut off.
+     */
+    public static LocalDateTime issuedNotBefore(long id, long slackMillis) {
+        return issuedNotBefore(id, slackMillis, ZoneId.systemDefault());
+    }
+
+    static LocalDateTime issuedNotBefore(long id, long slackMillis, ZoneId zone) {
+        if (id < FIRST_TIME_ORDERED_ID) {
+            return UNBOUNDED;
+        }
+        Instant issued = Instant.ofEpochMilli(timestampOf(id) - slackMillis);
+        LocalDateTime bound = LocalDateTime.ofInstant(issued, zone);
+        ZoneOffsetTransition next = zone.getRules().nextTransition(issued);
+        if (next != null && next.isOverlap() && next.getDateTimeAfter().isBefore(bound)) {
+            bound = next.getDateTimeAfter();
+        }
+        return bound;
+    }
+}
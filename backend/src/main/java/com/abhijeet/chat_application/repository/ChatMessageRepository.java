@@ -1,38 +1,83 @@
 package com.abhijeet.chat_application.repository;
 
 import com.abhijeet.chat_application.entity.ChatMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
-        List<ChatMessage> findTop50ByChatRoomIdOrderByTimestampDesc(Long chatRoomId);
+        // History views only need the sender's username alongside each message.
+        // Keyset pagination over (chat_room_id, timestamp) with id as tie-breaker
+        @EntityGraph(attributePaths = "sender")
+        @Query("SELECT m FROM ChatMessage m WHERE m.chatRoom.id = :chatRoomId ORDER BY m.timestamp DESC, m.id DESC")
+        List<ChatMessage> findLatestPage(@Param("chatRoomId") Long chatRoomId, Limit limit);
 
-        List<ChatMessage> findTop50ByChatRoomIsNullOrderByTimestampDesc();
+        @EntityGraph(attributePaths = "sender")
+        @Query("SELECT m FROM ChatMessage m WHERE m.chatRoom.id = :chatRoomId AND " +
+                        "(m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+                        "ORDER BY m.timestamp DESC, m.id DESC")
+        List<ChatMessage> findPageBefore(@Param("chatRoomId") Long chatRoomId,
+                        @Param("timestamp") LocalDateTime timestamp, @Param("id") Long id, Limit limit);
 
-        @Query("SELECT m.id FROM ChatMessage m WHERE m.chatRoom.id = :chatRoomId AND m.sender.username != :senderUsername AND m.status IN :statuses")
-        List<Long> findMessageIdsByChatRoomIdAndSenderUsernameNotAndStatusIn(
-                        @Param("chatRoomId") Long chatRoomId,
-                        @Param("senderUsername") String senderUsername,
-                        @Param("statuses") List<ChatMessage.MessageStatus> statuses);
+        @EntityGraph(attributePaths = "sender")
+        @Query("SELECT m FROM ChatMessage m WHERE m.chatRoom.id = :chatRoomId AND " +
+                        "(m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) " +
+                        "ORDER BY m.timestamp ASC, m.id ASC")
+        List<ChatMessage> findPageAfter(@Param("chatRoomId") Long chatRoomId,
+                        @Param("timestamp") LocalDateTime timestamp, @Param("id") Long id, Limit limit);
 
-        @Query("SELECT m.id, m.chatRoom.id FROM ChatMessage m JOIN m.chatRoom.participants p WHERE p.username = :username AND m.sender.username != :username AND m.status = :status")
-        List<Object[]> findMessageInfoByParticipantAndSenderNotAndStatus(
+        @EntityGraph(attributePaths = "sender")
+        @Query("SELECT m FROM ChatMessage m WHERE m.chatRoom IS NULL ORDER BY m.timestamp DESC, m.id DESC")
+        List<ChatMessage> findLatestPublicPage(Limit limit);
+
+        @EntityGraph(attributePaths = "sender")
+        @Query("SELECT m FROM ChatMessage m WHERE m.chatRoom IS NULL AND " +
+                        "(m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+                        "ORDER BY m.timestamp DESC, m.id DESC")
+        List<ChatMessage> findPublicPageBefore(@Param("timestamp") LocalDateTime timestamp, @Param("id") Long id,
+                        Limit limit);
+
+        @EntityGraph(attributePaths = "sender")
+        @Query("SELECT m FROM ChatMessage m WHERE m.chatRoom IS NULL AND " +
+                        "(m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) " +
+                        "ORDER BY m.timestamp ASC, m.id ASC")
+        List<ChatMessage> findPublicPageAfter(@Param("timestamp") LocalDateTime timestamp, @Param("id") Long id,
+                        Limit limit);
+
+        // Reconnect sync: messages in any of the user's rooms newer than the client's watermark.
+        // Ids are time-ordered, so "id > since" is "sent after the last message the client saw".
+        // The queries below that select by id take a timestamp lower bound as well (see
+        // TimeOrderedIds.issuedNotBefore) so Postgres skips monthly partitions before it.
+        @EntityGraph(attributePaths = "sender")
+        @Query("SELECT m FROM ChatMessage m JOIN m.chatRoom r JOIN r.participants p " +
+                        "WHERE p.username = :username AND m.id > :since AND m.timestamp >= :from ORDER BY m.id ASC")
+        List<ChatMessage> findByParticipantSince(@Param("username") String username, @Param("since") Long since,
+                        @Param("from") LocalDateTime from, Limit limit);
+
+        @Query("SELECT MAX(m.id) FROM ChatMessage m WHERE m.chatRoom.id = :chatRoomId AND m.timestamp >= :from")
+        Long findMaxIdByChatRoomId(@Param("chatRoomId") Long chatRoomId, @Param("from") LocalDateTime from);
+
+        // One chunk of (id, chatRoomId, timestamp) for messages awaiting delivery to the user, in id order after afterId
+        @Query("SELECT m.id, m.chatRoom.id, m.timestamp FROM ChatMessage m JOIN m.chatRoom.participants p WHERE p.username = :username AND m.sender.username != :username AND m.status = :status AND m.id > :afterId AND m.timestamp >= :from ORDER BY m.id ASC")
+        List<Object[]> findPendingDeliveryChunk(
                         @Param("username") String username,
-                        @Param("status") ChatMessage.MessageStatus status);
+                        @Param("afterId") Long afterId,
+                        @Param("from") LocalDateTime from,
+                        @Param("status") ChatMessage.MessageStatus status,
+                        Limit limit);
 
         @Modifying(clearAutomatically = true)
-        @Query("UPDATE ChatMessage m SET m.status = :newStatus WHERE m.id IN :messageIds")
-        int updateMessageStatusBulk(@Param("messageIds") List<Long> messageIds,
+        // The timestamp bound lets Postgres skip monthly partitions older than the oldest message
+        @Query("UPDATE ChatMessage m SET m.status = :newStatus WHERE m.id IN :messageIds AND m.timestamp >= :from")
+        int updateMessageStatusBulk(@Param("messageIds") List<Long> messageIds, @Param("from") LocalDateTime from,
                         @Param("newStatus") ChatMessage.MessageStatus newStatus);
-
-        @Query("SELECT m.sender.username, COUNT(m) FROM ChatMessage m JOIN m.chatRoom.participants p WHERE p.username = :username AND m.sender.username != :username AND m.status IN ('SENT', 'DELIVERED') GROUP BY m.sender.username")
-        List<Object[]> countUnreadMessagesBySender(
-                        @Param("username") String username);
 }
@@ -2,14 +2,41 @@ package com.abhijeet.chat_application.repository;
 
 import com.abhijeet.chat_application.entity.ChatRoom;
 import com.abhijeet.chat_application.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
+    @EntityGraph(attributePaths = "participants")
     List<ChatRoom> findByParticipantsContaining(User participant);
 
+    @EntityGraph(attributePaths = "participants")
     List<ChatRoom> findByParticipantsUsername(String username);
+
+    @EntityGraph(attributePaths = "participants")
+    Optional<ChatRoom> findByDirectKey(String directKey);
+
+    @EntityGraph(attributePaths = "participants")
+    List<ChatRoom> findByParticipantsUsernameAndLastMessageTimestampAfter(String username, LocalDateTime since);
+
+    boolean existsByIdAndParticipantsUsername(Long id, String username);
+
+    // Message path: the room plus everyone who should receive the broadcast
+    @EntityGraph(attributePaths = "participants")
+    Optional<ChatRoom> findWithParticipantsById(Long id);
+
+    @Query("SELECT r.lastMessageTimestamp FROM ChatRoom r WHERE r.id = :id")
+    LocalDateTime findLastMessageTimestampById(@Param("id") Long id);
+
+    // Sidebar previews as (id, lastMessage) for rooms that have a message
+    @Query("SELECT r.id, r.lastMessage FROM ChatRoom r WHERE r.id IN :ids AND r.lastMessage IS NOT NULL")
+    List<Object[]> findLastMessagesByIdIn(@Param("ids") Collection<Long> ids);
 }
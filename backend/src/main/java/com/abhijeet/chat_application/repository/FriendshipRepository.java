@@ -2,6 +2,7 @@ package com.abhijeet.chat_application.repository;
 
 import com.abhijeet.chat_application.entity.Friendship;
 import com.abhijeet.chat_application.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -13,25 +14,38 @@ import java.util.Optional;
 @Repository
 public interface FriendshipRepository extends JpaRepository<Friendship, Long> {
 
+    @EntityGraph(attributePaths = { "requester", "addressee" })
+    Optional<Friendship> findWithUsersById(Long id);
+
     // Find a specific friendship between two users (in either direction)
+    @EntityGraph(attributePaths = { "requester", "addressee" })
     @Query("SELECT f FROM Friendship f WHERE " +
             "(f.requester = :user1 AND f.addressee = :user2) OR " +
             "(f.requester = :user2 AND f.addressee = :user1)")
     Optional<Friendship> findByUsers(@Param("user1") User user1, @Param("user2") User user2);
 
     // Find all accepted friendships for a user
+    @EntityGraph(attributePaths = { "requester", "addressee" })
     @Query("SELECT f FROM Friendship f WHERE " +
             "(f.requester = :user OR f.addressee = :user) AND f.status = 'ACCEPTED'")
     List<Friendship> findAcceptedFriendships(@Param("user") User user);
 
     // Find all pending friend requests received by a user
+    @EntityGraph(attributePaths = { "requester", "addressee" })
     @Query("SELECT f FROM Friendship f WHERE f.addressee = :user AND f.status = 'PENDING'")
     List<Friendship> findPendingRequestsForUser(@Param("user") User user);
 
     // Find all pending friend requests sent by a user
+    @EntityGraph(attributePaths = { "requester", "addressee" })
     @Query("SELECT f FROM Friendship f WHERE f.requester = :user AND f.status = 'PENDING'")
     List<Friendship> findPendingRequestsSentByUser(@Param("user") User user);
 
+    // Ids of everyone the user has an accepted friendship with, in either direction
+    @Query("SELECT CASE WHEN f.requester.id = :userId THEN f.addressee.id ELSE f.requester.id END " +
+            "FROM Friendship f WHERE (f.requester.id = :userId OR f.addressee.id = :userId) " +
+            "AND f.status = 'ACCEPTED'")
+    List<Long> findAcceptedFriendIds(@Param("userId") Long userId);
+
     // Check if two users are friends (accepted)
     @Query("SELECT COUNT(f) > 0 FROM Friendship f WHERE " +
             "((f.requester = :user1 AND f.addressee = :user2) OR " +
@@ -0,0 +1,9 @@
+package com.abhijeet.chat_application.repository;
+
+import com.abhijeet.chat_application.entity.MaintenanceMarker;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MaintenanceMarkerRepository extends JpaRepository<MaintenanceMarker, String> {
+}
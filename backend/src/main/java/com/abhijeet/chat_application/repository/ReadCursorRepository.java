@@ -0,0 +1,37 @@
+package com.abhijeet.chat_application.repository;
+
+import com.abhijeet.chat_application.entity.ReadCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReadCursorRepository extends JpaRepository<ReadCursor, ReadCursor.Key> {
+
+    // Move the reader's cursor forward; never backwards if receipts arrive out of order
+    @Modifying
+    @Query(value = "INSERT INTO read_cursors (user_id, chat_room_id, last_read_message_id) " +
+            "SELECT u.id, :chatRoomId, :messageId FROM users u WHERE u.username = :username " +
+            "ON CONFLICT (user_id, chat_room_id) DO UPDATE " +
+            "SET last_read_message_id = GREATEST(read_cursors.last_read_message_id, EXCLUDED.last_read_message_id)",
+            nativeQuery = true)
+    int advance(@Param("chatRoomId") Long chatRoomId, @Param("username") String username,
+            @Param("messageId") Long messageId);
+
+    // Each participant's read position in the room, as (username, lastReadMessageId)
+    @Query(value = "SELECT u.username, c.last_read_message_id FROM read_cursors c " +
+            "JOIN users u ON u.id = c.user_id WHERE c.chat_room_id = :chatRoomId",
+            nativeQuery = true)
+    List<Object[]> findByChatRoom(@Param("chatRoomId") Long chatRoomId);
+
+    // Read positions across several rooms, as (chatRoomId, username, lastReadMessageId)
+    @Query(value = "SELECT c.chat_room_id, u.username, c.last_read_message_id FROM read_cursors c " +
+            "JOIN users u ON u.id = c.user_id WHERE c.chat_room_id IN (:chatRoomIds)",
+            nativeQuery = true)
+    List<Object[]> findByChatRoomIn(@Param("chatRoomIds") Collection<Long> chatRoomIds);
+}
@@ -0,0 +1,39 @@
+package com.abhijeet.chat_application.repository;
+
+import com.abhijeet.chat_application.entity.UnreadCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, UnreadCounter.Key> {
+
+    // Set the reader's counter to the messages still above their read cursor, which may be
+    // more than zero when the cursor does not cover the newest message. from is a timestamp
+    // lower bound for messages above the cursor, so older partitions are skipped
+    @Modifying
+    @Query(value = "UPDATE unread_counters c SET unread_count = (" +
+            "SELECT COUNT(*) FROM chat_messages m WHERE m.chat_room_id = c.chat_room_id " +
+            "AND m.sender_id <> c.user_id AND m.type = 'CHAT' AND m.timestamp >= :from " +
+            "AND m.id > COALESCE((SELECT r.last_read_message_id FROM read_cursors r " +
+            "WHERE r.user_id = c.user_id AND r.chat_room_id = c.chat_room_id), 0)) " +
+            "WHERE c.chat_room_id = :chatRoomId AND c.user_id = (SELECT id FROM users WHERE username = :username)",
+            nativeQuery = true)
+    int recount(@Param("chatRoomId") Long chatRoomId, @Param("username") String username,
+            @Param("from") LocalDateTime from);
+
+    // Unread count per 1:1 room, keyed by the other participant's username
+    @Query(value = "SELECT other.username, c.unread_count FROM unread_counters c " +
+            "JOIN users u ON u.id = c.user_id " +
+            "JOIN chat_rooms r ON r.id = c.chat_room_id AND r.is_group_chat = false " +
+            "JOIN chat_room_participants p ON p.chat_room_id = c.chat_room_id AND p.user_id <> c.user_id " +
+            "JOIN users other ON other.id = p.user_id " +
+            "WHERE u.username = :username AND c.unread_count > 0",
+            nativeQuery = true)
+    List<Object[]> findDirectUnreadCounts(@Param("username") String username);
+}
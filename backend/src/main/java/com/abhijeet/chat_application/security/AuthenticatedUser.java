@@ -0,0 +1,36 @@
+package com.abhijeet.chat_application.security;
+
+import com.abhijeet.chat_application.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The principal of an authenticated request or WebSocket session. It holds
+ * only the user's id and username, so it is immutable and safe to cache and
+ * share across threads, unlike the managed User entity it was resolved from.
+ */
+public record AuthenticatedUser(Long id, String username) implements UserDetails {
+
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername());
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    // Tokens are verified by signature; the password hash is never needed here
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of();
+    }
+}
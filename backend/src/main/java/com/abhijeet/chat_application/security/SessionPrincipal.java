@@ -0,0 +1,33 @@
+package com.abhijeet.chat_application.security;
+
+import com.abhijeet.chat_application.entity.User;
+import org.springframework.security.core.Authentication;
+
+import java.security.Principal;
+
+/**
+ * Access to the user a WebSocket session authenticated as. The CONNECT
+ * interceptor in WebSocketConfig resolves the user once and stores it as the
+ * session principal; message handlers read it from there instead of trusting
+ * a username in the payload or querying the database per frame.
+ *
+ * The principal is an AuthenticatedUser, so the User handed out here is a
+ * detached reference carrying only the id and username.
+ */
+public final class SessionPrincipal {
+
+    private SessionPrincipal() {
+    }
+
+    /**
+     * @return a reference to the authenticated user, or null if the session
+     *         did not authenticate at CONNECT
+     */
+    public static User user(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return User.builder().id(user.id()).username(user.username()).build();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.abhijeet.chat_application.security;
+
+import com.abhijeet.chat_application.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Remembers tokens that have already been verified, together with the user
+ * they resolved to, so repeat requests with the same bearer token skip JWT
+ * parsing and the user lookup.
+ *
+ * Entries hold an immutable AuthenticatedUser, never the managed entity, and
+ * live for at most jwt.cache.ttl-seconds and never past the token's own
+ * expiry. The cache is a Caffeine cache bounded at jwt.cache.max-size, so
+ * lookups from concurrent requests do not contend on a shared lock.
+ */
+@Component
+@RequiredArgsConstructor
+public class VerifiedTokenCache {
+
+    private final JwtUtils jwtUtils;
+    private final UserDetailsService userDetailsService;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${jwt.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, Entry> entries;
+
+    private record Entry(AuthenticatedUser user, long expiresAtMillis) {
+    }
+
+    @PostConstruct
+    void init() {
+        entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Resolve the user for a bearer token.
+     *
+     * @return the authenticated user, or null if the token is not valid
+     */
+    public AuthenticatedUser authenticate(String token) {
+        long now = System.currentTimeMillis();
+        Entry cached = entries.getIfPresent(token);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > now) {
+                return cached.user();
+            }
+            // The token itself expired before the cache TTL did
+            entries.invalidate(token);
+        }
+
+        Claims claims;
+        try {
+            claims = jwtUtils.extractAllClaims(token);
+        } catch (Exception e) {
+            return null;
+        }
+        if (claims.getSubject() == null) {
+            return null;
+        }
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        if (!(userDetails instanceof User user) || !jwtUtils.isTokenValid(claims, userDetails)) {
+            return null;
+        }
+
+        AuthenticatedUser authenticated = AuthenticatedUser.from(user);
+        entries.put(token, new Entry(authenticated, claims.getExpiration().getTime()));
+        return authenticated;
+    }
+}
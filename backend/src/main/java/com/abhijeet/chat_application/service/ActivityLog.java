@@ -0,0 +1,127 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.dto.ActivityEvent;
+import com.abhijeet.chat_application.entity.ChatMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded log of recent JOIN/LEAVE events.
+ *
+ * These events are ephemeral and never written to chat_messages. The last
+ * chat.activity.capacity events are kept in memory, or with
+ * chat.broker.mode=redis in the capped Redis list chat:activity so every node
+ * shows the same log. Newest first.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityLog {
+
+    private static final String KEY = "chat:activity";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.activity.capacity:200}")
+    private int capacity;
+
+    private final Deque<ActivityEvent> recent = new ArrayDeque<>();
+
+    public void record(ChatMessage.MessageType type, String username) {
+        ActivityEvent event = ActivityEvent.builder()
+                .type(type)
+                .username(username)
+                .timestamp(LocalDateTime.now())
+                .build();
+        if (isClustered()) {
+            try {
+                redisTemplate.opsForList().leftPush(KEY, encode(event));
+                redisTemplate.opsForList().trim(KEY, 0, capacity - 1);
+                return;
+            } catch (Exception e) {
+                log.warn("Failed to record {} of {} in Redis: {}", type, username, e.getMessage());
+            }
+        }
+        synchronized (recent) {
+            recent.addFirst(event);
+            while (recent.size() > capacity) {
+                recent.removeLast();
+            }
+        }
+    }
+
+    public List<ActivityEvent> recent(int limit) {
+        int count = Math.max(0, Math.min(limit, capacity));
+        if (count == 0) {
+            // LRANGE 0 -1 would return the whole list
+            return new ArrayList<>();
+        }
+        if (isClustered()) {
+            try {
+                List<String> entries = redisTemplate.opsForList().range(KEY, 0, count - 1);
+                List<ActivityEvent> events = new ArrayList<>();
+                if (entries != null) {
+                    for (String entry : entries) {
+                        ActivityEvent event = decode(entry);
+                        if (event != null) {
+                            events.add(event);
+                        }
+                    }
+                }
+                return events;
+            } catch (Exception e) {
+                log.warn("Failed to read activity from Redis: {}", e.getMessage());
+            }
+        }
+        List<ActivityEvent> events = new ArrayList<>(count);
+        synchronized (recent) {
+            Iterator<ActivityEvent> it = recent.iterator();
+            while (it.hasNext() && events.size() < count) {
+                events.add(it.next());
+            }
+        }
+        return events;
+    }
+
+    // type:epochMillis:username, with the username last since it may contain ':'
+    private static String encode(ActivityEvent event) {
+        long millis = event.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return event.getType().name() + ":" + millis + ":" + event.getUsername();
+    }
+
+    private static ActivityEvent decode(String entry) {
+        String[] parts = entry.split(":", 3);
+        if (parts.length < 3) {
+            return null;
+        }
+        try {
+            return ActivityEvent.builder()
+                    .type(ChatMessage.MessageType.valueOf(parts[0]))
+                    .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[1])),
+                            ZoneId.systemDefault()))
+                    .username(parts[2])
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean isClustered() {
+        return "redis".equals(brokerMode);
+    }
+}
@@ -1,118 +1,321 @@
 package com.abhijeet.chat_application.service;
 
+import com.abhijeet.chat_application.dto.ChatMessageDto;
+import com.abhijeet.chat_application.dto.DirectRoomRef;
+import com.abhijeet.chat_application.dto.MessagePage;
 import com.abhijeet.chat_application.entity.ChatMessage;
-import com.abhijeet.chat_application.entity.User;
+import com.abhijeet.chat_application.entity.id.TimeOrderedIds;
 import com.abhijeet.chat_application.repository.ChatMessageRepository;
-import com.abhijeet.chat_application.entity.ChatRoom;
 import com.abhijeet.chat_application.repository.ChatRoomRepository;
+import com.abhijeet.chat_application.exception.BadRequestException;
+import com.abhijeet.chat_application.exception.ResourceNotFoundException;
+import com.abhijeet.chat_application.repository.ReadCursorRepository;
+import com.abhijeet.chat_application.repository.UnreadCounterRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.CacheManager;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class ChatMessageService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int HISTORY_SIZE = 50;
+
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatRoomService chatRoomService;
+    private final RoomPreviewCache roomPreviewCache;
+    private final MessagePersistencePipeline messagePersistencePipeline;
+    private final RecentMessageBuffer recentMessageBuffer;
+    private final UnreadCounterRepository unreadCounterRepository;
+    private final ReadCursorRepository readCursorRepository;
     private final ChatRoomRepository chatRoomRepository;
-    private final CacheManager cacheManager;
 
-    @Transactional
-    public ChatMessage save(ChatMessage chatMessage) {
-        if (chatMessage.getChatRoom() != null && chatMessage.getType() == ChatMessage.MessageType.CHAT) {
-            ChatRoom room = chatMessage.getChatRoom();
-            room.setLastMessage(chatMessage.getContent());
-            room.setLastMessageTimestamp(chatMessage.getTimestamp());
-            chatRoomRepository.save(room);
-
-            // Invalidate user_chat_rooms cache for all participants
-            var cache = cacheManager.getCache("user_chat_rooms");
-            if (cache != null) {
-                for (User participant : room.getParticipants()) {
-                    cache.evict(participant.getUsername());
-                }
-            }
+    @Value("${chat.sync.max-clock-skew-ms:2000}")
+    private long maxClockSkewMs;
+
+    /**
+     * Assign an id to the message and hand it to the write-behind pipeline.
+     * The message can be broadcast as soon as this returns; the row and the
+     * room's last message are written in the next batch.
+     *
+     * @return false if the pipeline is saturated and the message was not accepted
+     */
+    public boolean saveAsync(ChatMessage chatMessage) {
+        chatMessage.setId(TimeOrderedIds.next());
+        if (!messagePersistencePipeline.enqueue(chatMessage)) {
+            return false;
         }
-        return chatMessageRepository.save(chatMessage);
+        recentMessageBuffer.append(ChatMessageDto.from(chatMessage));
+        return true;
     }
 
-    public List<ChatMessage> getMessages(Long chatRoomId) {
-        List<ChatMessage> messages;
-        if (chatRoomId != null) {
-            messages = chatMessageRepository.findTop50ByChatRoomIdOrderByTimestampDesc(chatRoomId);
-        } else {
-            messages = chatMessageRepository.findTop50ByChatRoomIsNullOrderByTimestampDesc();
+    public List<ChatMessageDto> getMessages(Long chatRoomId) {
+        RecentMessageBuffer.Snapshot buffered = recentMessageBuffer.latest(chatRoomId, HISTORY_SIZE);
+        if (buffered != null) {
+            List<ChatMessageDto> result = buffered.messages();
+            applyReadCursors(chatRoomId, result);
+            return result;
         }
-        List<ChatMessage> modifiableMessages = new ArrayList<>(messages);
-        Collections.reverse(modifiableMessages);
-        return modifiableMessages;
+
+        List<ChatMessageDto> newestFirst = seedRecentMessages(chatRoomId);
+        int count = Math.min(HISTORY_SIZE, newestFirst.size());
+        List<ChatMessageDto> result = new ArrayList<>(count);
+        for (int i = count - 1; i >= 0; i--) {
+            result.add(newestFirst.get(i));
+        }
+        applyReadCursors(chatRoomId, result);
+        return result;
     }
 
-    @Transactional
-    public List<Long> markAsRead(Long chatRoomId, String readerUsername) {
-        List<Long> messageIds = chatMessageRepository.findMessageIdsByChatRoomIdAndSenderUsernameNotAndStatusIn(
-                chatRoomId, readerUsername,
-                Arrays.asList(ChatMessage.MessageStatus.SENT, ChatMessage.MessageStatus.DELIVERED));
+    // Load the room's newest messages, newest first, and seed the in-memory buffer with them
+    private List<ChatMessageDto> seedRecentMessages(Long chatRoomId) {
+        Limit limit = Limit.of(Math.max(recentMessageBuffer.capacity(), HISTORY_SIZE));
+        List<ChatMessage> rows = chatRoomId != null
+                ? chatMessageRepository.findLatestPage(chatRoomId, limit)
+                : chatMessageRepository.findLatestPublicPage(limit);
+        List<ChatMessageDto> newestFirst = new ArrayList<>(rows.size());
+        for (ChatMessage row : rows) {
+            newestFirst.add(ChatMessageDto.from(row));
+        }
+        recentMessageBuffer.seed(chatRoomId, newestFirst);
+        return newestFirst;
+    }
+
+    /**
+     * Keyset-paginated history. Pass at most one of the cursors returned by a
+     * previous page; with neither, the newest page is returned.
+     */
+    public MessagePage getMessagePage(Long chatRoomId, String before, String after, int size) {
+        if (before != null && after != null) {
+            throw new BadRequestException("Only one of 'before' and 'after' may be given");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        if (before == null && after == null) {
+            RecentMessageBuffer.Snapshot buffered = recentMessageBuffer.latest(chatRoomId, pageSize);
+            if (buffered != null) {
+                return bufferedPage(chatRoomId, buffered);
+            }
+        }
+        // Fetch one extra row to learn whether another page exists
+        Limit limit = Limit.of(pageSize + 1);
 
-        if (messageIds.isEmpty())
-            return Collections.emptyList();
+        List<ChatMessage> rows;
+        boolean newerFirst = after == null;
+        if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            rows = chatRoomId != null
+                    ? chatMessageRepository.findPageBefore(chatRoomId, cursor.timestamp(), cursor.id(), limit)
+                    : chatMessageRepository.findPublicPageBefore(cursor.timestamp(), cursor.id(), limit);
+        } else if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            rows = chatRoomId != null
+                    ? chatMessageRepository.findPageAfter(chatRoomId, cursor.timestamp(), cursor.id(), limit)
+                    : chatMessageRepository.findPublicPageAfter(cursor.timestamp(), cursor.id(), limit);
+        } else {
+            rows = chatRoomId != null
+                    ? chatMessageRepository.findLatestPage(chatRoomId, limit)
+                    : chatMessageRepository.findLatestPublicPage(limit);
+        }
 
-        chatMessageRepository.updateMessageStatusBulk(messageIds, ChatMessage.MessageStatus.READ);
-        return messageIds;
+        boolean hasMore = rows.size() > pageSize;
+        List<ChatMessage> page = new ArrayList<>(Math.min(rows.size(), pageSize));
+        if (newerFirst) {
+            for (int i = Math.min(rows.size(), pageSize) - 1; i >= 0; i--) {
+                page.add(rows.get(i));
+            }
+        } else {
+            page.addAll(rows.subList(0, Math.min(rows.size(), pageSize)));
+        }
+
+        if (page.isEmpty()) {
+            return MessagePage.builder()
+                    .messages(List.of())
+                    .after(after != null ? after : before)
+                    .build();
+        }
+        // Older rows exist if we over-fetched going backwards, or always when paging forwards from a cursor
+        boolean hasOlder = !newerFirst || hasMore;
+        List<ChatMessageDto> messages = new ArrayList<>(page.size());
+        for (ChatMessage message : page) {
+            messages.add(ChatMessageDto.from(message));
+        }
+        applyReadCursors(chatRoomId, messages);
+        return MessagePage.builder()
+                .messages(messages)
+                .before(hasOlder ? MessageCursor.encode(page.get(0)) : null)
+                .after(MessageCursor.encode(page.get(page.size() - 1)))
+                .build();
+    }
+
+    private MessagePage bufferedPage(Long chatRoomId, RecentMessageBuffer.Snapshot buffered) {
+        List<ChatMessageDto> messages = buffered.messages();
+        if (messages.isEmpty()) {
+            return MessagePage.builder().messages(List.of()).build();
+        }
+        applyReadCursors(chatRoomId, messages);
+        ChatMessageDto oldest = messages.get(0);
+        ChatMessageDto newest = messages.get(messages.size() - 1);
+        return MessagePage.builder()
+                .messages(messages)
+                .before(buffered.hasOlder() ? MessageCursor.encode(oldest.getTimestamp(), oldest.getId()) : null)
+                .after(MessageCursor.encode(newest.getTimestamp(), newest.getId()))
+                .build();
     }
 
+    /**
+     * Move the reader's read cursor in the room up to the given message, or to
+     * the newest message when none is given. One upsert, regardless of how
+     * many messages it covers; the unread counter is then recounted from the
+     * messages still above the cursor.
+     *
+     * A client-supplied id is capped at the newest id any node can have
+     * issued by now, so a receipt cannot mark messages that do not exist yet
+     * as read. The cap is time-based rather than the room's newest stored id
+     * because messages are written behind and may be read before they commit.
+     *
+     * @return the message id the cursor now covers, or null if the room is empty
+     */
     @Transactional
-    public java.util.Map<Long, java.util.List<Long>> markAsDeliveredForUser(String username) {
-        List<Object[]> unreadInfos = chatMessageRepository.findMessageInfoByParticipantAndSenderNotAndStatus(
-                username, ChatMessage.MessageStatus.SENT);
+    public Long markAsRead(Long chatRoomId, String readerUsername, Long lastReadMessageId) {
+        Long messageId = lastReadMessageId != null
+                ? Math.min(lastReadMessageId, TimeOrderedIds.lowestIdAt(System.currentTimeMillis() + maxClockSkewMs) - 1)
+                : newestMessageId(chatRoomId);
+        if (messageId == null || messageId <= 0)
+            return null;
 
-        if (unreadInfos.isEmpty())
-            return Collections.emptyMap();
+        readCursorRepository.advance(chatRoomId, readerUsername, messageId);
+        // The cursor is now at least messageId, so only messages issued after it can still be unread
+        unreadCounterRepository.recount(chatRoomId, readerUsername,
+                TimeOrderedIds.issuedNotBefore(messageId, maxClockSkewMs));
+        return messageId;
+    }
 
-        List<Long> allMessageIds = new ArrayList<>();
-        java.util.Map<Long, java.util.List<Long>> roomIdToMessageIds = new java.util.HashMap<>();
+    // The newest message is no older than the room's last message time, which bounds the partitions searched
+    private Long newestMessageId(Long chatRoomId) {
+        LocalDateTime lastMessageAt = chatRoomRepository.findLastMessageTimestampById(chatRoomId);
+        if (lastMessageAt == null) {
+            return null;
+        }
+        return chatMessageRepository.findMaxIdByChatRoomId(chatRoomId,
+                lastMessageAt.minus(Duration.ofMillis(maxClockSkewMs)));
+    }
 
-        for (Object[] info : unreadInfos) {
-            Long messageId = (Long) info[0];
-            Long roomId = (Long) info[1];
-            allMessageIds.add(messageId);
+    /**
+     * Read position of every participant in the room, keyed by username. Only
+     * a participant of the room may read them.
+     */
+    public Map<String, Long> getReadCursors(Long chatRoomId, String username) {
+        if (!chatRoomRepository.existsByIdAndParticipantsUsername(chatRoomId, username)) {
+            throw new ResourceNotFoundException("ChatRoom", "id", chatRoomId);
+        }
+        return getReadCursors(chatRoomId);
+    }
 
-            roomIdToMessageIds.computeIfAbsent(roomId, k -> new ArrayList<>()).add(messageId);
+    private Map<String, Long> getReadCursors(Long chatRoomId) {
+        Map<String, Long> cursors = new HashMap<>();
+        for (Object[] row : readCursorRepository.findByChatRoom(chatRoomId)) {
+            cursors.put((String) row[0], ((Number) row[1]).longValue());
         }
+        return cursors;
+    }
 
-        chatMessageRepository.updateMessageStatusBulk(allMessageIds, ChatMessage.MessageStatus.DELIVERED);
-        return roomIdToMessageIds;
+    /**
+     * Show messages from any number of rooms as READ where another participant
+     * has read past them. Cursors are loaded in one query for all the rooms.
+     */
+    public void applyReadCursors(List<ChatMessageDto> messages) {
+        Set<Long> roomIds = new HashSet<>();
+        for (ChatMessageDto message : messages) {
+            if (message.getChatRoomId() != null) {
+                roomIds.add(message.getChatRoomId());
+            }
+        }
+        if (roomIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<String, Long>> cursorsByRoom = new HashMap<>();
+        for (Object[] row : readCursorRepository.findByChatRoomIn(roomIds)) {
+            cursorsByRoom.computeIfAbsent(((Number) row[0]).longValue(), id -> new HashMap<>())
+                    .put((String) row[1], ((Number) row[2]).longValue());
+        }
+        for (ChatMessageDto message : messages) {
+            Map<String, Long> cursors = cursorsByRoom.get(message.getChatRoomId());
+            if (cursors != null) {
+                applyReadCursors(cursors, List.of(message));
+            }
+        }
     }
 
-    public java.util.Map<String, Long> getUnreadCounts(String username) {
-        List<Object[]> results = chatMessageRepository.countUnreadMessagesBySender(username);
-        java.util.Map<String, Long> counts = new java.util.HashMap<>();
+    private void applyReadCursors(Long chatRoomId, List<ChatMessageDto> messages) {
+        if (chatRoomId == null || messages.isEmpty()) {
+            return;
+        }
+        Map<String, Long> cursors = getReadCursors(chatRoomId);
+        if (cursors.isEmpty()) {
+            return;
+        }
+        applyReadCursors(cursors, messages);
+    }
+
+    // Show a message as READ once any participant other than its sender has read past it
+    private void applyReadCursors(Map<String, Long> cursors, List<ChatMessageDto> messages) {
+        for (ChatMessageDto message : messages) {
+            if (message.getStatus() == ChatMessage.MessageStatus.READ) {
+                continue;
+            }
+            for (Map.Entry<String, Long> cursor : cursors.entrySet()) {
+                if (!cursor.getKey().equals(message.getSenderUsername()) && cursor.getValue() >= message.getId()) {
+                    message.setStatus(ChatMessage.MessageStatus.READ);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unread counts for the user's 1:1 rooms, keyed by the other participant.
+     * Read from the precomputed counters, so the cost is per room rather than
+     * per unread message.
+     */
+    public Map<String, Long> getUnreadCounts(String username) {
+        List<Object[]> results = unreadCounterRepository.findDirectUnreadCounts(username);
+        Map<String, Long> counts = new HashMap<>();
         for (Object[] result : results) {
             counts.put((String) result[0], ((Number) result[1]).longValue());
         }
         return counts;
     }
 
-    @Cacheable(value = "user_chat_rooms", key = "#username")
-    public java.util.Map<String, String> getLastMessages(String username) {
-        List<ChatRoom> activeRooms = chatRoomRepository.findByParticipantsUsername(username);
-        java.util.Map<String, String> lastMessages = new java.util.HashMap<>();
-
-        for (ChatRoom room : activeRooms) {
-            if (room.getLastMessage() != null) {
-                for (User participant : room.getParticipants()) {
-                    if (!participant.getUsername().equals(username)) {
-                        lastMessages.put(participant.getUsername(), room.getLastMessage());
-                        break;
-                    }
-                }
+    /**
+     * Last message per 1:1 room, keyed by the other participant. Joined from
+     * the cached room list and the per-room previews, so a new message only
+     * ever touches its own room's entry.
+     */
+    public Map<String, String> getLastMessages(String username) {
+        List<DirectRoomRef> rooms = chatRoomService.getDirectRooms(username);
+        List<Long> roomIds = new ArrayList<>(rooms.size());
+        for (DirectRoomRef room : rooms) {
+            roomIds.add(room.getChatRoomId());
+        }
+        Map<Long, String> previews = roomPreviewCache.getAll(roomIds);
+
+        Map<String, String> lastMessages = new HashMap<>();
+        for (DirectRoomRef room : rooms) {
+            String preview = previews.get(room.getChatRoomId());
+            if (preview != null) {
+                lastMessages.put(room.getUsername(), preview);
             }
         }
         return lastMessages;
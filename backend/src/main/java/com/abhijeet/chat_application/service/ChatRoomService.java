@@ -0,0 +1,86 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.dto.DirectRoomRef;
+import com.abhijeet.chat_application.entity.ChatRoom;
+import com.abhijeet.chat_application.entity.User;
+import com.abhijeet.chat_application.repository.ChatRoomRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class ChatRoomService {
+
+    public static final String DIRECT_ROOMS_CACHE = "user_direct_rooms";
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final CacheManager cacheManager;
+
+    /**
+     * Canonical key of the 1:1 room between two users, independent of order.
+     */
+    public static String directKey(Long userId1, Long userId2) {
+        return Math.min(userId1, userId2) + ":" + Math.max(userId1, userId2);
+    }
+
+    /**
+     * Find the 1:1 room between two users with a single indexed lookup,
+     * creating it if needed. When two requests race to create the same room,
+     * the unique direct_key rejects the loser, which then reads the winner's
+     * room.
+     */
+    public ChatRoom getOrCreateDirectRoom(User u1, User u2) {
+        String key = directKey(u1.getId(), u2.getId());
+        return chatRoomRepository.findByDirectKey(key).orElseGet(() -> {
+            ChatRoom newRoom = ChatRoom.builder()
+                    .isGroupChat(false)
+                    .directKey(key)
+                    .participants(List.of(u1, u2))
+                    .build();
+            try {
+                ChatRoom created = chatRoomRepository.saveAndFlush(newRoom);
+                evictDirectRooms(u1.getUsername(), u2.getUsername());
+                return created;
+            } catch (DataIntegrityViolationException e) {
+                return chatRoomRepository.findByDirectKey(key).orElseThrow(() -> e);
+            }
+        });
+    }
+
+    /**
+     * The user's 1:1 rooms with the other participant of each. Only changes
+     * when a room is created, so it stays cached while messages flow.
+     */
+    @Cacheable(value = DIRECT_ROOMS_CACHE, key = "#username", sync = true)
+    public List<DirectRoomRef> getDirectRooms(String username) {
+        List<DirectRoomRef> refs = new ArrayList<>();
+        for (ChatRoom room : chatRoomRepository.findByParticipantsUsername(username)) {
+            if (room.isGroupChat()) {
+                continue;
+            }
+            for (User participant : room.getParticipants()) {
+                if (!participant.getUsername().equals(username)) {
+                    refs.add(DirectRoomRef.builder().chatRoomId(room.getId()).username(participant.getUsername()).build());
+                    break;
+                }
+            }
+        }
+        return refs;
+    }
+
+    private void evictDirectRooms(String... usernames) {
+        Cache cache = cacheManager.getCache(DIRECT_ROOMS_CACHE);
+        if (cache != null) {
+            for (String username : usernames) {
+                cache.evict(username);
+            }
+        }
+    }
+}
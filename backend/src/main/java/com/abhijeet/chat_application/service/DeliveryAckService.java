@@ -0,0 +1,106 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.controller.StatusUpdateMessage;
+import com.abhijeet.chat_application.entity.ChatMessage;
+import com.abhijeet.chat_application.entity.id.TimeOrderedIds;
+import com.abhijeet.chat_application.repository.ChatMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Marks messages waiting for a user as DELIVERED when they come online.
+ *
+ * Runs off the CONNECT path and walks the pending messages in id order, in
+ * chunks of chat.delivery.chunk-size, each in its own short transaction.
+ * Memory and the IN list stay bounded however long the user was away. Status
+ * notifications are coalesced into one per room, carrying the highest
+ * delivered id.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeliveryAckService {
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageFanoutService messageFanoutService;
+    private final RecentMessageBuffer recentMessageBuffer;
+
+    @Value("${chat.delivery.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${chat.sync.max-clock-skew-ms:2000}")
+    private long maxClockSkewMs;
+
+    @Async
+    public void acknowledgeAsync(String username) {
+        try {
+            acknowledge(username);
+        } catch (Exception e) {
+            log.error("Delivery acknowledgement for {} failed", username, e);
+        }
+    }
+
+    public void acknowledge(String username) {
+        Map<Long, Long> deliveredUpToPerRoom = new HashMap<>();
+        long afterId = 0L;
+        while (true) {
+            long cursor = afterId;
+            List<Object[]> chunk = transactionTemplate.execute(status -> {
+                // Later chunks skip partitions before the previous chunk's last message
+                List<Object[]> rows = chatMessageRepository.findPendingDeliveryChunk(username, cursor,
+                        TimeOrderedIds.issuedNotBefore(cursor, maxClockSkewMs), ChatMessage.MessageStatus.SENT,
+                        Limit.of(chunkSize));
+                if (!rows.isEmpty()) {
+                    List<Long> ids = new ArrayList<>(rows.size());
+                    LocalDateTime oldest = null;
+                    for (Object[] row : rows) {
+                        ids.add((Long) row[0]);
+                        LocalDateTime timestamp = (LocalDateTime) row[2];
+                        if (timestamp != null && (oldest == null || timestamp.isBefore(oldest))) {
+                            oldest = timestamp;
+                        }
+                    }
+                    chatMessageRepository.updateMessageStatusBulk(ids,
+                            oldest != null ? oldest : LocalDateTime.of(1970, 1, 1, 0, 0),
+                            ChatMessage.MessageStatus.DELIVERED);
+                }
+                return rows;
+            });
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            for (Object[] row : chunk) {
+                deliveredUpToPerRoom.merge((Long) row[1], (Long) row[0], Math::max);
+            }
+            afterId = (Long) chunk.get(chunk.size() - 1)[0];
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+
+        for (Map.Entry<Long, Long> entry : deliveredUpToPerRoom.entrySet()) {
+            recentMessageBuffer.advanceStatus(entry.getKey(), entry.getValue(), username,
+                    ChatMessage.MessageStatus.DELIVERED);
+            StatusUpdateMessage statusUpdate = StatusUpdateMessage.builder()
+                    .type(ChatMessage.MessageType.STATUS_UPDATE)
+                    .chatRoomId(entry.getKey())
+                    .newStatus(ChatMessage.MessageStatus.DELIVERED)
+                    .recipientUsername(username)
+                    .upToMessageId(entry.getValue())
+                    .build();
+            messageFanoutService.send("/topic/chatrooms/" + entry.getKey(), statusUpdate);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.repository.FriendshipRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * In-memory adjacency index of accepted friendships, keyed by user id.
+ *
+ * Each user's friends are held as a sorted long[] and checked by binary
+ * search, so a friendship test costs no database access once the user's row
+ * is loaded. Rows are loaded on first use and dropped by {@link #invalidate}
+ * whenever a friendship involving the user changes. Invalidations are also
+ * published on the chat:friendship-invalidation channel so every node drops
+ * its copy; chat.friends.index-ttl-seconds bounds staleness should a node
+ * miss one. At most chat.friends.index-max-size users are held.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendshipIndex implements MessageListener {
+
+    public static final String CHANNEL = "chat:friendship-invalidation";
+
+    // Separates the node id from the user ids in an invalidation message
+    private static final char SEPARATOR = '\n';
+
+    private final FriendshipRepository friendshipRepository;
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${chat.friends.index-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${chat.friends.index-max-size:100000}")
+    private long maxSize;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private Cache<Long, long[]> adjacency;
+
+    @PostConstruct
+    void init() {
+        adjacency = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public boolean areFriends(long userId, long otherUserId) {
+        return Arrays.binarySearch(friendsOf(userId), otherUserId) >= 0;
+    }
+
+    /**
+     * @return the ids of the user's accepted friends, sorted ascending. The
+     *         array is shared and must not be modified.
+     */
+    public long[] friendsOf(long userId) {
+        return adjacency.get(userId, this::load);
+    }
+
+    public void invalidate(long userId, long otherUserId) {
+        evictLocal(userId, otherUserId);
+        // A concurrent reader may reload the old rows before the change commits; drop them again afterwards
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictLocal(userId, otherUserId);
+                    publishEviction(userId, otherUserId);
+                }
+            });
+        } else {
+            publishEviction(userId, otherUserId);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(SEPARATOR);
+        if (separator < 0) {
+            log.warn("Dropping malformed friendship invalidation message");
+            return;
+        }
+        if (nodeId.equals(body.substring(0, separator))) {
+            return;
+        }
+        try {
+            for (String userId : body.substring(separator + 1).split(",")) {
+                adjacency.invalidate(Long.parseLong(userId));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Dropping malformed friendship invalidation message");
+        }
+    }
+
+    private void evictLocal(long userId, long otherUserId) {
+        adjacency.invalidate(userId);
+        adjacency.invalidate(otherUserId);
+    }
+
+    private void publishEviction(long userId, long otherUserId) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + SEPARATOR + userId + "," + otherUserId);
+        } catch (Exception e) {
+            // Other nodes fall back to the TTL for these users
+            log.warn("Failed to publish friendship invalidation for {} and {}: {}", userId, otherUserId,
+                    e.getMessage());
+        }
+    }
+
+    private long[] load(long userId) {
+        List<Long> ids = friendshipRepository.findAcceptedFriendIds(userId);
+        long[] friendIds = new long[ids.size()];
+        for (int i = 0; i < friendIds.length; i++) {
+            friendIds[i] = ids.get(i);
+        }
+        Arrays.sort(friendIds);
+        return friendIds;
+    }
+}
@@ -20,6 +20,7 @@ public class FriendshipService {
 
     private final FriendshipRepository friendshipRepository;
     private final UserService userService;
+    private final FriendshipIndex friendshipIndex;
 
     /**
      * Send a friend request from requester to addressee.
@@ -45,7 +46,9 @@ public class FriendshipService {
                 if (f.getRequester().getUsername().equals(addresseeUsername)) {
                     f.setStatus(Friendship.FriendshipStatus.ACCEPTED);
                     f.setUpdatedAt(LocalDateTime.now());
-                    return friendshipRepository.save(f);
+                    Friendship saved = friendshipRepository.save(f);
+                    friendshipIndex.invalidate(requester.getId(), addressee.getId());
+                    return saved;
                 }
                 throw new BadRequestException("Friend request already sent to " + addresseeUsername);
             }
@@ -73,7 +76,7 @@ public class FriendshipService {
      */
     @Transactional
     public Friendship acceptFriendRequest(Long friendshipId, String acceptingUsername) {
-        Friendship friendship = friendshipRepository.findById(friendshipId)
+        Friendship friendship = friendshipRepository.findWithUsersById(friendshipId)
                 .orElseThrow(() -> new ResourceNotFoundException("Friendship", "id", friendshipId.toString()));
 
         if (!friendship.getAddressee().getUsername().equals(acceptingUsername)) {
@@ -86,7 +89,9 @@ public class FriendshipService {
 
         friendship.setStatus(Friendship.FriendshipStatus.ACCEPTED);
         friendship.setUpdatedAt(LocalDateTime.now());
-        return friendshipRepository.save(friendship);
+        Friendship saved = friendshipRepository.save(friendship);
+        friendshipIndex.invalidate(friendship.getRequester().getId(), friendship.getAddressee().getId());
+        return saved;
     }
 
     /**
@@ -94,7 +99,7 @@ public class FriendshipService {
      */
     @Transactional
     public Friendship rejectFriendRequest(Long friendshipId, String rejectingUsername) {
-        Friendship friendship = friendshipRepository.findById(friendshipId)
+        Friendship friendship = friendshipRepository.findWithUsersById(friendshipId)
                 .orElseThrow(() -> new ResourceNotFoundException("Friendship", "id", friendshipId.toString()));
 
         if (!friendship.getAddressee().getUsername().equals(rejectingUsername)) {
@@ -107,7 +112,9 @@ public class FriendshipService {
 
         friendship.setStatus(Friendship.FriendshipStatus.REJECTED);
         friendship.setUpdatedAt(LocalDateTime.now());
-        return friendshipRepository.save(friendship);
+        Friendship saved = friendshipRepository.save(friendship);
+        friendshipIndex.invalidate(friendship.getRequester().getId(), friendship.getAddressee().getId());
+        return saved;
     }
 
     /**
@@ -115,16 +122,15 @@ public class FriendshipService {
      */
     public List<User> getFriends(String username) {
         User user = userService.getUserByUsername(username);
-        List<Friendship> friendships = friendshipRepository.findAcceptedFriendships(user);
-        List<User> friends = new ArrayList<>();
-        for (Friendship f : friendships) {
-            if (f.getRequester().getUsername().equals(username)) {
-                friends.add(f.getAddressee());
-            } else {
-                friends.add(f.getRequester());
-            }
+        long[] friendIds = friendshipIndex.friendsOf(user.getId());
+        if (friendIds.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = new ArrayList<>(friendIds.length);
+        for (long id : friendIds) {
+            ids.add(id);
         }
-        return friends;
+        return userService.getUsersByIds(ids);
     }
 
     /**
@@ -149,7 +155,15 @@ public class FriendshipService {
     public boolean areFriends(String username1, String username2) {
         User user1 = userService.getUserByUsername(username1);
         User user2 = userService.getUserByUsername(username2);
-        return friendshipRepository.areFriends(user1, user2);
+        return areFriends(user1.getId(), user2.getId());
+    }
+
+    /**
+     * Check if two users are friends by id. Served from the in-memory index,
+     * so callers that already hold the users pay no database access.
+     */
+    public boolean areFriends(Long userId1, Long userId2) {
+        return friendshipIndex.areFriends(userId1, userId2);
     }
 
     /**
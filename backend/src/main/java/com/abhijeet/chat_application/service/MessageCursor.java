@@ -0,0 +1,35 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.entity.ChatMessage;
+import com.abhijeet.chat_application.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque history cursor: the (timestamp, id) position of a message, encoded
+ * as URL-safe base64 so clients treat it as a token rather than parse it.
+ */
+record MessageCursor(LocalDateTime timestamp, Long id) {
+
+    static String encode(ChatMessage message) {
+        return encode(message.getTimestamp(), message.getId());
+    }
+
+    static String encode(LocalDateTime timestamp, Long id) {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static MessageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new MessageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid message cursor");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.config.ClusterBrokerRelay;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivers one payload to many broker destinations.
+ *
+ * The payload is converted to JSON once and the resulting byte array is
+ * shared by every outgoing message; only the small per-destination header map
+ * is built for each recipient. Messages go straight to the broker channel,
+ * skipping the template's conversion and header processing per send. In
+ * cluster mode the payload is relayed to the other nodes once per call, not
+ * once per destination.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageFanoutService {
+
+    private static final MessageHeaders JSON_HEADERS = new MessageHeaders(
+            Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectProvider<ClusterBrokerRelay> clusterBrokerRelay;
+
+    public void send(String destination, Object payload) {
+        send(List.of(destination), payload);
+    }
+
+    public void send(Collection<String> destinations, Object payload) {
+        if (destinations.isEmpty()) {
+            return;
+        }
+        Message<?> converted = messagingTemplate.getMessageConverter().toMessage(payload, JSON_HEADERS);
+        if (converted == null || !(converted.getPayload() instanceof byte[] bytes)) {
+            log.error("Could not serialize broadcast payload {}", payload.getClass().getSimpleName());
+            return;
+        }
+
+        ClusterBrokerRelay relay = clusterBrokerRelay.getIfAvailable();
+        if (relay != null) {
+            relay.publish(destinations, MimeTypeUtils.APPLICATION_JSON, bytes);
+        }
+
+        MessageChannel brokerChannel = messagingTemplate.getMessageChannel();
+        for (String destination : destinations) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(destination);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            if (relay != null) {
+                // Already published above; keeps the broker channel interceptor from relaying it again
+                accessor.setHeader(ClusterBrokerRelay.RELAYED_HEADER, "local");
+            }
+            brokerChannel.send(MessageBuilder.createMessage(bytes, accessor.getMessageHeaders()));
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.controller.StatusUpdateMessage;
+import com.abhijeet.chat_application.entity.ChatMessage;
+import com.abhijeet.chat_application.entity.User;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for chat messages.
+ *
+ * Messages are queued after they have been broadcast and written by a single
+ * background thread in multi-row INSERT batches. A single writer draining one
+ * FIFO queue keeps messages of the same room in send order. When the queue is
+ * full, callers block for up to the enqueue timeout, which pushes back on the
+ * inbound STOMP threads instead of growing the heap. A failed batch is
+ * retried, never dropped; see {@link #flushWithRetry}. On shutdown the
+ * writer stops only after the room lanes have drained into the queue, and
+ * flushes what is left.
+ *
+ * A recipient who connects while their message is still queued is missed by
+ * DeliveryAckService, which only sees written rows. So before writing, SENT
+ * messages in 1:1 rooms whose recipient is online by now are stored as
+ * DELIVERED, and the receipt is broadcast once the batch is written.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessagePersistencePipeline implements SmartLifecycle {
+
+    // Stops after RoomExecutor, whose tasks are the ones enqueueing messages
+    public static final int PHASE = RoomExecutor.PHASE - 4096;
+
+    private static final String INSERT_PREFIX = "INSERT INTO chat_messages (id, chat_room_id, sender_id, content, type, status, timestamp) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_ROOM_SQL = "UPDATE chat_rooms SET last_message = ?, last_message_timestamp = ? "
+            + "WHERE id = ? AND (last_message_timestamp IS NULL OR last_message_timestamp <= ?)";
+
+    private static final String DEAD_LETTER_SQL = "INSERT INTO chat_messages_dead_letter "
+            + "(id, chat_room_id, sender_id, content, type, status, timestamp, error, failed_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+
+    // Adds the batch's messages to the unread counter of every participant except the sender, counting
+    // only messages above the participant's read cursor: a reader who has the room open may have read
+    // them off the broadcast before this batch was written
+    private static final String INCREMENT_UNREAD_SQL = "INSERT INTO unread_counters (user_id, chat_room_id, unread_count) "
+            + "SELECT p.user_id, p.chat_room_id, COUNT(*) FROM chat_room_participants p "
+            + "CROSS JOIN unnest(string_to_array(?, ',')::bigint[]) AS m(id) "
+            + "LEFT JOIN read_cursors c ON c.user_id = p.user_id AND c.chat_room_id = p.chat_room_id "
+            + "WHERE p.chat_room_id = ? AND p.user_id <> ? "
+            + "AND (c.last_read_message_id IS NULL OR c.last_read_message_id < m.id) "
+            + "GROUP BY p.user_id, p.chat_room_id "
+            + "ON CONFLICT (user_id, chat_room_id) DO UPDATE "
+            + "SET unread_count = unread_counters.unread_count + EXCLUDED.unread_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RoomPreviewCache roomPreviewCache;
+    private final PresenceRegistry presenceRegistry;
+    private final RecentMessageBuffer recentMessageBuffer;
+    private final MessageFanoutService messageFanoutService;
+
+    @Value("${chat.persistence.batch-size:200}")
+    private int batchSize;
+
+    @Value("${chat.persistence.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${chat.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.persistence.enqueue-timeout-ms:500}")
+    private long enqueueTimeoutMs;
+
+    @Value("${chat.persistence.retry.initial-backoff-ms:100}")
+    private long initialBackoffMs;
+
+    @Value("${chat.persistence.retry.max-backoff-ms:5000}")
+    private long maxBackoffMs;
+
+    private BlockingQueue<ChatMessage> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::drainLoop, "message-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void start() {
+        // The writer starts at construction so messages can be queued before the context finishes starting
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.error("Message writer did not finish within 10 s; {} queued messages may be lost", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Queue a message for persistence. The message must already carry its id.
+     *
+     * @return false if the queue stayed full for the whole enqueue timeout
+     */
+    public boolean enqueue(ChatMessage chatMessage) {
+        try {
+            return queue.offer(chatMessage, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drainLoop() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatMessage first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // Shutdown requested: flush whatever is still queued before exiting
+                queue.drainTo(batch, batchSize - 1);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+            Map<Long, StatusUpdateMessage> receipts = markDeliveredToOnlineRecipients(batch);
+            flushWithRetry(batch);
+            announceDelivered(receipts);
+            batch.clear();
+        }
+    }
+
+    // Promotes SENT messages in 1:1 rooms whose recipient is online now, as ChatController does at send
+    // time, and returns one receipt per room for the highest promoted id
+    private Map<Long, StatusUpdateMessage> markDeliveredToOnlineRecipients(List<ChatMessage> batch) {
+        Map<Long, StatusUpdateMessage> receipts = new LinkedHashMap<>();
+        Map<Long, String> onlineRecipientPerRoom = new HashMap<>();
+        for (ChatMessage m : batch) {
+            if (m.getStatus() != ChatMessage.MessageStatus.SENT || m.getType() != ChatMessage.MessageType.CHAT
+                    || m.getChatRoom() == null || m.getChatRoom().isGroupChat() || m.getSender() == null) {
+                continue;
+            }
+            Long roomId = m.getChatRoom().getId();
+            String recipient = onlineRecipientPerRoom.computeIfAbsent(roomId, id -> onlineRecipient(m));
+            if (recipient.isEmpty()) {
+                continue;
+            }
+            m.setStatus(ChatMessage.MessageStatus.DELIVERED);
+            receipts.put(roomId, StatusUpdateMessage.builder()
+                    .type(ChatMessage.MessageType.STATUS_UPDATE)
+                    .chatRoomId(roomId)
+                    .newStatus(ChatMessage.MessageStatus.DELIVERED)
+                    .recipientUsername(recipient)
+                    .upToMessageId(m.getId())
+                    .build());
+        }
+        return receipts;
+    }
+
+    // The other participant of the message's 1:1 room if they are online, otherwise empty
+    private String onlineRecipient(ChatMessage m) {
+        try {
+            for (User participant : m.getChatRoom().getParticipants()) {
+                if (!participant.getUsername().equals(m.getSender().getUsername())
+                        && presenceRegistry.isOnline(participant.getUsername())) {
+                    return participant.getUsername();
+                }
+            }
+        } catch (Exception e) {
+            // Participants not loaded; DeliveryAckService picks the message up on the next connect
+            log.warn("Could not check the recipient of message {}: {}", m.getId(), e.getMessage());
+        }
+        return "";
+    }
+
+    private void announceDelivered(Map<Long, StatusUpdateMessage> receipts) {
+        for (StatusUpdateMessage receipt : receipts.values()) {
+            try {
+                recentMessageBuffer.advanceStatus(receipt.getChatRoomId(), receipt.getUpToMessageId(),
+                        receipt.getRecipientUsername(), ChatMessage.MessageStatus.DELIVERED);
+                messageFanoutService.send("/topic/chatrooms/" + receipt.getChatRoomId(), receipt);
+            } catch (Exception e) {
+                log.warn("Delivery receipt for room {} failed: {}", receipt.getChatRoomId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the batch, retrying with exponential backoff for as long as the
+     * database is unreachable; meanwhile the queue fills up and pushes back
+     * on senders. If the database answers but the batch still fails, one of
+     * its rows is bad: the rows are then written one by one and any that
+     * fail are parked in chat_messages_dead_letter.
+     */
+    private void flushWithRetry(List<ChatMessage> batch) {
+        long backoffMs = initialBackoffMs;
+        for (int attempt = 1;; attempt++) {
+            try {
+                Set<Long> advancedRooms = transactionTemplate.execute(status -> flush(batch));
+                updateRoomPreviews(batch, advancedRooms);
+                return;
+            } catch (Exception e) {
+                if (databaseReachable()) {
+                    log.warn("Batch of {} messages failed, writing rows one by one: {}", batch.size(),
+                            e.getMessage());
+                    flushRowByRow(batch);
+                    return;
+                }
+                log.warn("Failed to persist {} messages (attempt {}), retrying in {} ms: {}", batch.size(), attempt,
+                        backoffMs, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                // Shutdown requested; keep retrying until stop() gives up waiting
+            }
+            backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+        }
+    }
+
+    private void flushRowByRow(List<ChatMessage> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            List<ChatMessage> single = List.of(batch.get(i));
+            try {
+                Set<Long> advancedRooms = transactionTemplate.execute(status -> flush(single));
+                updateRoomPreviews(single, advancedRooms);
+            } catch (Exception e) {
+                if (!databaseReachable()) {
+                    // The database went away meanwhile; the remaining rows are not at fault
+                    flushWithRetry(batch.subList(i, batch.size()));
+                    return;
+                }
+                deadLetter(batch.get(i), e);
+            }
+        }
+    }
+
+    private void deadLetter(ChatMessage m, Exception cause) {
+        // Never written, so history reads must stop serving it
+        recentMessageBuffer.remove(m.getChatRoom() != null ? m.getChatRoom().getId() : null, m.getId());
+        try {
+            jdbcTemplate.update(DEAD_LETTER_SQL, m.getId(), m.getChatRoom() != null ? m.getChatRoom().getId() : null,
+                    m.getSender() != null ? m.getSender().getId() : null, m.getContent(),
+                    m.getType() != null ? m.getType().name() : null,
+                    m.getStatus() != null ? m.getStatus().name() : null,
+                    m.getTimestamp() != null ? Timestamp.valueOf(m.getTimestamp()) : null,
+                    String.valueOf(cause.getMessage()), Timestamp.valueOf(LocalDateTime.now()));
+            log.error("Parked message {} in chat_messages_dead_letter: {}", m.getId(), cause.getMessage());
+        } catch (Exception e) {
+            log.error("Could not persist or park message {} in room {}: {}", m.getId(),
+                    m.getChatRoom() != null ? m.getChatRoom().getId() : null, e.getMessage());
+        }
+    }
+
+    private boolean databaseReachable() {
+        try {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Returns the rooms whose last message this batch moved forward
+    private Set<Long> flush(List<ChatMessage> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW_PLACEHOLDER.length() + 2))
+                .append(INSERT_PREFIX);
+        List<Object> params = new ArrayList<>(batch.size() * 7);
+        Map<Long, ChatMessage> latestPerRoom = new LinkedHashMap<>();
+        Map<List<Long>, StringBuilder> unreadPerRoomAndSender = new LinkedHashMap<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            ChatMessage m = batch.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+            params.add(m.getId());
+            params.add(m.getChatRoom() != null ? m.getChatRoom().getId() : null);
+            params.add(m.getSender().getId());
+            params.add(m.getContent());
+            params.add(m.getType() != null ? m.getType().name() : null);
+            params.add(m.getStatus() != null ? m.getStatus().name() : null);
+            params.add(Timestamp.valueOf(m.getTimestamp()));
+
+            if (m.getChatRoom() != null && m.getType() == ChatMessage.MessageType.CHAT) {
+                latestPerRoom.put(m.getChatRoom().getId(), m);
+                if (m.getStatus() != ChatMessage.MessageStatus.READ) {
+                    StringBuilder ids = unreadPerRoomAndSender.computeIfAbsent(
+                            List.of(m.getChatRoom().getId(), m.getSender().getId()), k -> new StringBuilder());
+                    ids.append(ids.length() > 0 ? "," : "").append(m.getId());
+                }
+            }
+        }
+        jdbcTemplate.update(sql.toString(), params.toArray());
+
+        if (!unreadPerRoomAndSender.isEmpty()) {
+            List<Object[]> increments = new ArrayList<>(unreadPerRoomAndSender.size());
+            for (Map.Entry<List<Long>, StringBuilder> entry : unreadPerRoomAndSender.entrySet()) {
+                increments.add(new Object[] { entry.getValue().toString(), entry.getKey().get(0),
+                        entry.getKey().get(1) });
+            }
+            jdbcTemplate.batchUpdate(INCREMENT_UNREAD_SQL, increments);
+        }
+
+        // One room update per distinct room instead of one per message. Batches from different
+        // nodes may commit out of order, so an older message never replaces a newer preview.
+        Set<Long> advancedRooms = new HashSet<>();
+        if (!latestPerRoom.isEmpty()) {
+            List<Long> roomIds = new ArrayList<>(latestPerRoom.keySet());
+            List<Object[]> roomUpdates = new ArrayList<>(roomIds.size());
+            for (Long roomId : roomIds) {
+                ChatMessage m = latestPerRoom.get(roomId);
+                Timestamp timestamp = Timestamp.valueOf(m.getTimestamp());
+                roomUpdates.add(new Object[] { m.getContent(), timestamp, roomId, timestamp });
+            }
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_ROOM_SQL, roomUpdates);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] != 0) {
+                    advancedRooms.add(roomIds.get(i));
+                }
+            }
+        }
+        return advancedRooms;
+    }
+
+    // One cache write per room whose stored preview moved forward: it becomes the batch's latest message there
+    private void updateRoomPreviews(List<ChatMessage> batch, Set<Long> advancedRooms) {
+        if (advancedRooms == null || advancedRooms.isEmpty()) {
+            return;
+        }
+        Map<Long, String> latestPerRoom = new LinkedHashMap<>();
+        for (ChatMessage m : batch) {
+            if (m.getChatRoom() != null && m.getType() == ChatMessage.MessageType.CHAT
+                    && advancedRooms.contains(m.getChatRoom().getId())) {
+                latestPerRoom.put(m.getChatRoom().getId(), m.getContent());
+            }
+        }
+        latestPerRoom.forEach(roomPreviewCache::put);
+    }
+}
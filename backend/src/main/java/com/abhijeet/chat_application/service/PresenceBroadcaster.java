@@ -0,0 +1,134 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.dto.PresenceDiff;
+import com.abhijeet.chat_application.entity.User;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells a user's accepted friends when the user comes online or goes offline.
+ *
+ * Changes are collected and sent every chat.presence.broadcast-interval-ms
+ * as one diff per online friend on /topic/presence.{username}. An offline
+ * change waits chat.presence.offline-grace-ms first, and a user who flips
+ * back within the window produces no update, so a reconnect wave after a
+ * deploy does not reach clients at all. On shutdown whatever is pending is
+ * sent at once, grace period or not.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenceBroadcaster {
+
+    private final FriendshipIndex friendshipIndex;
+    private final UserService userService;
+    private final PresenceRegistry presenceRegistry;
+    private final MessageFanoutService messageFanoutService;
+
+    @Value("${chat.presence.offline-grace-ms:5000}")
+    private long offlineGraceMs;
+
+    private final Map<Long, PendingChange> pendingChanges = new ConcurrentHashMap<>();
+
+    // transitions counts flips within the window; an even count means no net change
+    private record PendingChange(String username, boolean online, int transitions, long atMillis) {
+    }
+
+    public void online(User user) {
+        record(user, true);
+    }
+
+    public void offline(User user) {
+        record(user, false);
+    }
+
+    private void record(User user, boolean online) {
+        long now = System.currentTimeMillis();
+        pendingChanges.compute(user.getId(), (id, pending) -> pending == null
+                ? new PendingChange(user.getUsername(), online, 1, now)
+                : new PendingChange(user.getUsername(), online, pending.transitions() + 1, now));
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.broadcast-interval-ms:2000}")
+    void broadcast() {
+        broadcast(offlineGraceMs);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        try {
+            broadcast(0L);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast pending presence on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private void broadcast(long graceMs) {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<Long, PendingChange> due = new HashMap<>();
+        for (Long userId : pendingChanges.keySet()) {
+            PendingChange change = pendingChanges.get(userId);
+            if (change == null || (!change.online() && now - change.atMillis() < graceMs)) {
+                continue;
+            }
+            // Only take the change if it was not updated meanwhile; otherwise it waits for the next round
+            if (pendingChanges.remove(userId, change) && change.transitions() % 2 == 1) {
+                due.put(userId, change);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        // Group the changes by friend, keeping only friends who are online to receive them
+        Map<Long, List<PendingChange>> changesByFriend = new HashMap<>();
+        for (Map.Entry<Long, PendingChange> entry : due.entrySet()) {
+            for (long friendId : friendshipIndex.friendsOf(entry.getKey())) {
+                changesByFriend.computeIfAbsent(friendId, id -> new ArrayList<>()).add(entry.getValue());
+            }
+        }
+        if (changesByFriend.isEmpty()) {
+            return;
+        }
+        Map<Long, String> friendNames = new HashMap<>();
+        for (User friend : userService.getUsersByIds(changesByFriend.keySet())) {
+            friendNames.put(friend.getId(), friend.getUsername());
+        }
+        Set<String> reachable = presenceRegistry.onlineAmong(new HashSet<>(friendNames.values()));
+
+        LocalDateTime timestamp = LocalDateTime.now();
+        for (Map.Entry<Long, List<PendingChange>> entry : changesByFriend.entrySet()) {
+            String friendName = friendNames.get(entry.getKey());
+            if (friendName == null || !reachable.contains(friendName)) {
+                continue;
+            }
+            List<String> online = new ArrayList<>();
+            List<String> offline = new ArrayList<>();
+            for (PendingChange change : entry.getValue()) {
+                (change.online() ? online : offline).add(change.username());
+            }
+            messageFanoutService.send("/topic/presence." + friendName, PresenceDiff.builder()
+                    .online(online)
+                    .offline(offline)
+                    .timestamp(timestamp)
+                    .build());
+        }
+        log.debug("Broadcast presence of {} users to {} friends", due.size(), changesByFriend.size());
+    }
+}
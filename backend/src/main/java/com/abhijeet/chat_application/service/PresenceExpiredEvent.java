@@ -0,0 +1,10 @@
+package com.abhijeet.chat_application.service;
+
+import java.util.List;
+
+/**
+ * Users who went offline because the node holding their sessions stopped
+ * heartbeating or shut down, rather than by disconnecting.
+ */
+public record PresenceExpiredEvent(List<String> usernames) {
+}
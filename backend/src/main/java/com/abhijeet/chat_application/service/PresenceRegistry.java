@@ -0,0 +1,368 @@
+package com.abhijeet.chat_application.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who is online, counted by open WebSocket sessions.
+ *
+ * A user stays online until their last session closes, so closing one of
+ * several tabs does not mark them offline. Sessions on this node are tracked
+ * in memory. With chat.broker.mode=redis, each node also records its share in
+ * a Redis hash per user (chat:presence:{username}, one field per node holding
+ * the node's last heartbeat time) so every node sees the cluster-wide state.
+ * Fields whose heartbeat is older than chat.presence.ttl-seconds are ignored,
+ * so a crashed node stops counting even while other nodes keep the hash
+ * alive. Nodes also heartbeat into chat:presence:nodes; the first node to
+ * notice a dead one removes its fields and publishes a
+ * {@link PresenceExpiredEvent} for the users left with no live session. A
+ * node shutting down does the same for its own users when the context
+ * closes, while the broadcaster can still tell their friends.
+ *
+ * The users table is no longer written per connect or disconnect: changes are
+ * coalesced per user and written in one batch every chat.presence.flush-interval-ms.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenceRegistry {
+
+    private static final String KEY_PREFIX = "chat:presence:";
+    private static final String NODES_KEY = "chat:presence:nodes";
+    // Users with a session on the node, so survivors know whose fields to remove when it dies
+    private static final String NODE_USERS_PREFIX = "chat:presence:node-users:";
+    private static final String UPDATE_SQL = "UPDATE users SET is_online = ?, last_seen = COALESCE(?, last_seen) WHERE username = ?";
+
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.presence.ttl-seconds:90}")
+    private long ttlSeconds;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, PresenceChange> pendingChanges = new ConcurrentHashMap<>();
+
+    private record PresenceChange(boolean online, LocalDateTime lastSeen) {
+    }
+
+    /**
+     * Register a session for the user.
+     *
+     * @return true if the user just came online, i.e. this is their first session
+     */
+    public boolean connect(String username, String sessionId) {
+        boolean[] first = new boolean[1];
+        sessionsByUser.compute(username, (u, sessions) -> {
+            if (sessions == null) {
+                sessions = ConcurrentHashMap.newKeySet();
+            }
+            first[0] = sessions.isEmpty();
+            sessions.add(sessionId);
+            return sessions;
+        });
+        if (!first[0]) {
+            return false;
+        }
+        boolean cameOnline = !isClustered() || publishShare(username, true) == 1;
+        if (cameOnline) {
+            pendingChanges.put(username, new PresenceChange(true, null));
+        }
+        return cameOnline;
+    }
+
+    /**
+     * Unregister a session. Disconnect events may be delivered more than once;
+     * repeats are ignored.
+     *
+     * @return true if that was the user's last session and they are now offline
+     */
+    public boolean disconnect(String username, String sessionId) {
+        boolean[] last = new boolean[1];
+        sessionsByUser.computeIfPresent(username, (u, sessions) -> {
+            if (sessions.remove(sessionId) && sessions.isEmpty()) {
+                last[0] = true;
+                return null;
+            }
+            return sessions;
+        });
+        if (!last[0]) {
+            return false;
+        }
+        boolean wentOffline = !isClustered() || publishShare(username, false) == 0;
+        if (wentOffline) {
+            pendingChanges.put(username, new PresenceChange(false, LocalDateTime.now()));
+        }
+        return wentOffline;
+    }
+
+    public boolean isOnline(String username) {
+        if (sessionsByUser.containsKey(username)) {
+            return true;
+        }
+        if (!isClustered()) {
+            return false;
+        }
+        try {
+            return liveNodes(redisTemplate.opsForHash().values(KEY_PREFIX + username), cutoff()) > 0;
+        } catch (Exception e) {
+            log.warn("Presence lookup for {} failed: {}", username, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The online users among the given ones, checking Redis for all of them
+     * in one pipeline.
+     */
+    public Set<String> onlineAmong(Collection<String> usernames) {
+        Set<String> online = new HashSet<>();
+        List<String> remote = new ArrayList<>();
+        for (String username : usernames) {
+            if (sessionsByUser.containsKey(username)) {
+                online.add(username);
+            } else {
+                remote.add(username);
+            }
+        }
+        if (!isClustered() || remote.isEmpty()) {
+            return online;
+        }
+        try {
+            List<Object> heartbeats = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String username : remote) {
+                    connection.hashCommands().hVals(key(username));
+                }
+                return null;
+            });
+            long cutoff = cutoff();
+            for (int i = 0; i < remote.size(); i++) {
+                if (heartbeats.get(i) instanceof Collection<?> values && liveNodes(values, cutoff) > 0) {
+                    online.add(remote.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Presence lookup for {} users failed: {}", remote.size(), e.getMessage());
+        }
+        return online;
+    }
+
+    // Sets or removes this node's field in the user's hash and returns how many live nodes hold the user
+    private long publishShare(String username, boolean present) {
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] key = key(username);
+                byte[] field = nodeId.getBytes(StandardCharsets.UTF_8);
+                byte[] nodeUsers = (NODE_USERS_PREFIX + nodeId).getBytes(StandardCharsets.UTF_8);
+                byte[] member = username.getBytes(StandardCharsets.UTF_8);
+                if (present) {
+                    connection.hashCommands().hSet(key, field, now());
+                    connection.keyCommands().expire(key, ttlSeconds);
+                    connection.setCommands().sAdd(nodeUsers, member);
+                } else {
+                    connection.hashCommands().hDel(key, field);
+                    connection.setCommands().sRem(nodeUsers, member);
+                }
+                connection.hashCommands().hVals(key);
+                return null;
+            });
+            return results.get(results.size() - 1) instanceof Collection<?> values ? liveNodes(values, cutoff()) : 0;
+        } catch (Exception e) {
+            // Fall back to this node's view
+            log.warn("Presence update for {} failed: {}", username, e.getMessage());
+            return present ? 1 : 0;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.heartbeat-ms:30000}")
+    void heartbeat() {
+        if (!isClustered()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] field = nodeId.getBytes(StandardCharsets.UTF_8);
+                byte[] heartbeat = now();
+                byte[] nodeUsers = (NODE_USERS_PREFIX + nodeId).getBytes(StandardCharsets.UTF_8);
+                connection.zSetCommands().zAdd(NODES_KEY.getBytes(StandardCharsets.UTF_8),
+                        System.currentTimeMillis(), field);
+                for (String username : sessionsByUser.keySet()) {
+                    byte[] key = key(username);
+                    connection.hashCommands().hSet(key, field, heartbeat);
+                    connection.keyCommands().expire(key, ttlSeconds);
+                    // Restores the set should this node have been taken for dead, e.g. after a long pause
+                    connection.setCommands().sAdd(nodeUsers, username.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            sweepDeadNodes();
+        } catch (Exception e) {
+            log.warn("Presence heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    // Removes the fields of nodes that stopped heartbeating and announces users left offline
+    private void sweepDeadNodes() {
+        long cutoff = cutoff();
+        Set<String> deadNodes = redisTemplate.opsForZSet().rangeByScore(NODES_KEY, 0, cutoff);
+        if (deadNodes == null) {
+            return;
+        }
+        for (String deadNode : deadNodes) {
+            // Whoever removes the node from the set does the cleanup, so it happens once
+            Long claimed = redisTemplate.opsForZSet().remove(NODES_KEY, deadNode);
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            String nodeUsers = NODE_USERS_PREFIX + deadNode;
+            Set<String> usernames = redisTemplate.opsForSet().members(nodeUsers);
+            redisTemplate.delete(nodeUsers);
+            if (usernames == null || usernames.isEmpty()) {
+                continue;
+            }
+            List<String> wentOffline = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (String username : usernames) {
+                redisTemplate.opsForHash().delete(KEY_PREFIX + username, deadNode);
+                if (!sessionsByUser.containsKey(username)
+                        && liveNodes(redisTemplate.opsForHash().values(KEY_PREFIX + username), cutoff) == 0) {
+                    wentOffline.add(username);
+                    pendingChanges.put(username, new PresenceChange(false, now));
+                }
+            }
+            log.warn("Node {} stopped heartbeating; {} of its {} users are now offline", deadNode,
+                    wentOffline.size(), usernames.size());
+            if (!wentOffline.isEmpty()) {
+                eventPublisher.publishEvent(new PresenceExpiredEvent(wentOffline));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.flush-interval-ms:1000}")
+    void flush() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        List<Object[]> updates = new ArrayList<>(pendingChanges.size());
+        for (String username : pendingChanges.keySet()) {
+            PresenceChange change = pendingChanges.remove(username);
+            if (change != null) {
+                updates.add(new Object[] { change.online(),
+                        change.lastSeen() != null ? Timestamp.valueOf(change.lastSeen()) : null, username });
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        } catch (Exception e) {
+            log.warn("Failed to write presence for {} users: {}", updates.size(), e.getMessage());
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    void shutdown() {
+        List<String> usernames = new ArrayList<>(sessionsByUser.keySet());
+        // The disconnect events that follow as sessions close find nothing left to withdraw
+        sessionsByUser.clear();
+        // Single node: everyone connected here is going offline with it
+        List<String> wentOffline = isClustered() ? withdrawShares(usernames) : usernames;
+        LocalDateTime now = LocalDateTime.now();
+        for (String username : wentOffline) {
+            pendingChanges.put(username, new PresenceChange(false, now));
+        }
+        flush();
+        if (isClustered() && !wentOffline.isEmpty()) {
+            // Their friends on other nodes get the offline diff, as when a node dies
+            eventPublisher.publishEvent(new PresenceExpiredEvent(wentOffline));
+        }
+    }
+
+    // Removes this node's fields and returns the users no other live node holds
+    private List<String> withdrawShares(List<String> usernames) {
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] field = nodeId.getBytes(StandardCharsets.UTF_8);
+                for (String username : usernames) {
+                    connection.hashCommands().hDel(key(username), field);
+                    connection.hashCommands().hVals(key(username));
+                }
+                connection.zSetCommands().zRem(NODES_KEY.getBytes(StandardCharsets.UTF_8), field);
+                connection.keyCommands().del((NODE_USERS_PREFIX + nodeId).getBytes(StandardCharsets.UTF_8));
+                return null;
+            });
+            long cutoff = cutoff();
+            List<String> wentOffline = new ArrayList<>();
+            for (int i = 0; i < usernames.size(); i++) {
+                if (!(results.get(2 * i + 1) instanceof Collection<?> values) || liveNodes(values, cutoff) == 0) {
+                    wentOffline.add(usernames.get(i));
+                }
+            }
+            return wentOffline;
+        } catch (Exception e) {
+            // Survivors announce these users once this node's heartbeat goes stale
+            log.warn("Failed to withdraw presence on shutdown: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private boolean isClustered() {
+        return "redis".equals(brokerMode);
+    }
+
+    /**
+     * Number of heartbeats, as epoch milliseconds, no older than the cutoff.
+     * Unparseable values, e.g. written before heartbeats carried a time,
+     * count as stale.
+     */
+    static int liveNodes(Collection<?> heartbeats, long cutoff) {
+        int live = 0;
+        for (Object heartbeat : heartbeats) {
+            String value = heartbeat instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8)
+                    : String.valueOf(heartbeat);
+            try {
+                if (Long.parseLong(value) >= cutoff) {
+                    live++;
+                }
+            } catch (NumberFormatException e) {
+                // Stale
+            }
+        }
+        return live;
+    }
+
+    private long cutoff() {
+        return System.currentTimeMillis() - ttlSeconds * 1000;
+    }
+
+    private static byte[] now() {
+        return String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] key(String username) {
+        return (KEY_PREFIX + username).getBytes(StandardCharsets.UTF_8);
+    }
+}
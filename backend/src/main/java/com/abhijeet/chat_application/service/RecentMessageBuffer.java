@@ -0,0 +1,455 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.config.ClusterBrokerRelay;
+import com.abhijeet.chat_application.dto.ChatMessageDto;
+import com.abhijeet.chat_application.entity.ChatMessage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The newest messages of each recently used room, held in memory so opening
+ * a chat does not query Postgres.
+ *
+ * Each room keeps a ring of up to chat.history.buffer.messages-per-room
+ * messages in id order. A ring exists only for rooms someone reads: the first
+ * read misses and leaves an empty ring, which collects new messages while the
+ * database is queried and then serves reads once seeded. Messages for rooms
+ * without a ring are not buffered. Rooms are evicted least recently used
+ * first whenever the estimated size of all rings exceeds
+ * chat.history.buffer.max-bytes. The public lobby is the room with a null id.
+ *
+ * With chat.broker.mode=redis, chat messages and delivery receipts broadcast
+ * by other nodes arrive through the cluster relay and are applied to the
+ * rings here too, so every node's rings see the whole room. A relayed message
+ * may arrive after newer local ones and is inserted by id. A message parked
+ * in the dead letter table is removed from this node's ring; other nodes keep
+ * it until their ring for the room is evicted.
+ *
+ * Exported metrics: chat.history.buffer.gets (result=hit|miss),
+ * chat.history.buffer.bytes and chat.history.buffer.rooms.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecentMessageBuffer implements ClusterBrokerRelay.RemoteBroadcastListener {
+
+    private static final long LOBBY = 0L;
+
+    private static final String PUBLIC_TOPIC = "/topic/public";
+    private static final String ROOM_TOPIC_PREFIX = "/topic/chatrooms/";
+
+    // Rough heap cost of a buffered message besides its strings: DTO, boxed ids, timestamp, ring slot
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    // Decodes relayed broadcasts with the converter that encoded them
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    @Value("${chat.history.buffer.messages-per-room:100}")
+    private int capacity;
+
+    @Value("${chat.history.buffer.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Access-ordered, so iteration starts at the least recently used room
+    private final LinkedHashMap<Long, RoomRing> rooms = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The newest messages of a room, oldest first.
+     *
+     * @param hasOlder whether the room has messages before the first one returned
+     */
+    public record Snapshot(List<ChatMessageDto> messages, boolean hasOlder) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        FunctionCounter.builder("chat.history.buffer.gets", hits, LongAdder::sum).tag("result", "hit").register(registry);
+        FunctionCounter.builder("chat.history.buffer.gets", misses, LongAdder::sum).tag("result", "miss").register(registry);
+        Gauge.builder("chat.history.buffer.bytes", totalBytes, AtomicLong::get).baseUnit("bytes").register(registry);
+        Gauge.builder("chat.history.buffer.rooms", this, buffer -> buffer.roomCount()).register(registry);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Add a newly accepted message to its room's ring, if the room has one.
+     */
+    public void append(ChatMessageDto message) {
+        ChatMessageDto buffered = copy(message);
+        RoomRing ring;
+        synchronized (rooms) {
+            ring = rooms.get(key(message.getChatRoomId()));
+        }
+        if (ring == null) {
+            return;
+        }
+        synchronized (ring) {
+            // An evicted ring is no longer read; the room starts over on its next read
+            if (ring.evicted) {
+                return;
+            }
+            totalBytes.addAndGet(ring.append(buffered));
+        }
+        evictIfOverBudget();
+    }
+
+    /**
+     * Drop a message from its room's ring, e.g. once it was parked in the
+     * dead letter table instead of being written.
+     */
+    public void remove(Long chatRoomId, long messageId) {
+        RoomRing ring;
+        synchronized (rooms) {
+            ring = rooms.get(key(chatRoomId));
+        }
+        if (ring == null) {
+            return;
+        }
+        synchronized (ring) {
+            if (!ring.evicted) {
+                totalBytes.addAndGet(ring.remove(messageId));
+            }
+        }
+    }
+
+    /**
+     * The newest {@code count} messages of a room, or null if the room's ring
+     * has not been seeded or cannot answer for that many messages. A miss on
+     * a room without a ring creates an empty one, so messages accepted while
+     * the caller loads and {@link #seed seeds} the room are kept.
+     */
+    public Snapshot latest(Long chatRoomId, int count) {
+        RoomRing ring = ringFor(chatRoomId);
+        Snapshot snapshot = ring.latest(count);
+        (snapshot != null ? hits : misses).increment();
+        return snapshot;
+    }
+
+    /**
+     * Seed a room's ring with its newest messages as read from the database,
+     * merged with anything appended while the query ran.
+     *
+     * @param newestFirst up to {@link #capacity()} rows, newest first
+     */
+    public void seed(Long chatRoomId, List<ChatMessageDto> newestFirst) {
+        List<ChatMessageDto> copies = new ArrayList<>(newestFirst.size());
+        for (ChatMessageDto message : newestFirst) {
+            copies.add(copy(message));
+        }
+        while (true) {
+            RoomRing ring = ringFor(chatRoomId);
+            synchronized (ring) {
+                if (!ring.evicted) {
+                    totalBytes.addAndGet(ring.seed(copies, newestFirst.size() < capacity));
+                    break;
+                }
+            }
+        }
+        evictIfOverBudget();
+    }
+
+    /**
+     * Raise the status of every buffered message in the room up to
+     * {@code upToMessageId} that the recipient did not send.
+     */
+    public void advanceStatus(Long chatRoomId, long upToMessageId, String recipientUsername,
+            ChatMessage.MessageStatus status) {
+        RoomRing ring;
+        synchronized (rooms) {
+            ring = rooms.get(key(chatRoomId));
+        }
+        if (ring != null) {
+            ring.advanceStatus(upToMessageId, recipientUsername, status);
+        }
+    }
+
+    /**
+     * Apply a chat message or delivery receipt broadcast on another node to
+     * the room's ring, as {@link #append} and {@link #advanceStatus} do for
+     * local ones.
+     */
+    @Override
+    public void onRemoteBroadcast(List<String> destinations, MimeType contentType, byte[] payload) {
+        boolean roomBroadcast = false;
+        for (String destination : destinations) {
+            if (PUBLIC_TOPIC.equals(destination) || destination.startsWith(ROOM_TOPIC_PREFIX)) {
+                roomBroadcast = true;
+                break;
+            }
+        }
+        SimpMessagingTemplate template = messagingTemplate.getIfAvailable();
+        if (!roomBroadcast || template == null) {
+            return;
+        }
+        MessageConverter converter = template.getMessageConverter();
+        Message<byte[]> message = MessageBuilder.withPayload(payload)
+                .setHeader(MessageHeaders.CONTENT_TYPE, contentType != null ? contentType : MimeTypeUtils.APPLICATION_JSON)
+                .build();
+        if (!(converter.fromMessage(message, RelayedMessage.class) instanceof RelayedMessage relayed)) {
+            return;
+        }
+        if (relayed.getType() == ChatMessage.MessageType.CHAT && relayed.getId() != null) {
+            append(ChatMessageDto.builder()
+                    .id(relayed.getId())
+                    .chatRoomId(relayed.getChatRoomId())
+                    .senderUsername(relayed.getSenderUsername())
+                    .content(relayed.getContent())
+                    .type(relayed.getType())
+                    .status(relayed.getStatus())
+                    .timestamp(relayed.getTimestamp())
+                    .build());
+        } else if (relayed.getType() == ChatMessage.MessageType.STATUS_UPDATE && relayed.getUpToMessageId() != null
+                && relayed.getRecipientUsername() != null && relayed.getNewStatus() != null) {
+            advanceStatus(relayed.getChatRoomId(), relayed.getUpToMessageId(), relayed.getRecipientUsername(),
+                    relayed.getNewStatus());
+        }
+    }
+
+    /**
+     * The fields of the chat messages and receipts relayed on room topics,
+     * so a broadcast is decoded once whichever of the two it is.
+     */
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class RelayedMessage {
+        private ChatMessage.MessageType type;
+        private Long id;
+        private Long chatRoomId;
+        private String senderUsername;
+        private String content;
+        private ChatMessage.MessageStatus status;
+        private LocalDateTime timestamp;
+        private Long upToMessageId;
+        private String recipientUsername;
+        private ChatMessage.MessageStatus newStatus;
+    }
+
+    private RoomRing ringFor(Long chatRoomId) {
+        synchronized (rooms) {
+            return rooms.computeIfAbsent(key(chatRoomId), k -> new RoomRing(capacity));
+        }
+    }
+
+    private int roomCount() {
+        synchronized (rooms) {
+            return rooms.size();
+        }
+    }
+
+    private void evictIfOverBudget() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        synchronized (rooms) {
+            Iterator<RoomRing> eldest = rooms.values().iterator();
+            while (totalBytes.get() > maxBytes && eldest.hasNext()) {
+                RoomRing ring = eldest.next();
+                eldest.remove();
+                totalBytes.addAndGet(-ring.evict());
+            }
+        }
+    }
+
+    private static long key(Long chatRoomId) {
+        return chatRoomId != null ? chatRoomId : LOBBY;
+    }
+
+    // Buffered messages are private copies; callers get fresh copies back
+    private static ChatMessageDto copy(ChatMessageDto message) {
+        return ChatMessageDto.builder()
+                .id(message.getId())
+                .chatRoomId(message.getChatRoomId())
+                .senderUsername(message.getSenderUsername())
+                .content(message.getContent())
+                .type(message.getType())
+                .status(message.getStatus())
+                .timestamp(message.getTimestamp())
+                .build();
+    }
+
+    private static long sizeOf(ChatMessageDto message) {
+        int chars = (message.getContent() != null ? message.getContent().length() : 0)
+                + (message.getSenderUsername() != null ? message.getSenderUsername().length() : 0);
+        return MESSAGE_OVERHEAD_BYTES + 2L * chars;
+    }
+
+    /**
+     * Fixed-size ring of one room's newest messages in id order. All methods
+     * return the change in estimated bytes so the caller can keep the total.
+     */
+    private static final class RoomRing {
+
+        private final ChatMessageDto[] slots;
+        private int head;
+        private int size;
+        private long bytes;
+        private boolean seeded;
+        // True while the ring holds every message of the room, i.e. nothing older exists
+        private boolean complete;
+        // Set once the ring is dropped from the map; writers must then use the room's new ring
+        private boolean evicted;
+
+        RoomRing(int capacity) {
+            this.slots = new ChatMessageDto[capacity];
+        }
+
+        synchronized long evict() {
+            evicted = true;
+            return bytes;
+        }
+
+        synchronized long append(ChatMessageDto message) {
+            long before = bytes;
+            if (size > 0 && message.getId() <= slots[(head + size - 1) % slots.length].getId()) {
+                insert(message);
+                return bytes - before;
+            }
+            if (size == slots.length) {
+                bytes -= sizeOf(slots[head]);
+                slots[head] = message;
+                head = (head + 1) % slots.length;
+                complete = false;
+            } else {
+                slots[(head + size) % slots.length] = message;
+                size++;
+            }
+            bytes += sizeOf(message);
+            return bytes - before;
+        }
+
+        // Places a message that arrived after newer ones, e.g. relayed from another node, at its id
+        private void insert(ChatMessageDto message) {
+            List<ChatMessageDto> ordered = new ArrayList<>(size + 1);
+            boolean inserted = false;
+            for (int i = 0; i < size; i++) {
+                ChatMessageDto held = slots[(head + i) % slots.length];
+                if (held.getId().equals(message.getId())) {
+                    return;
+                }
+                if (!inserted && message.getId() < held.getId()) {
+                    ordered.add(message);
+                    inserted = true;
+                }
+                ordered.add(held);
+            }
+            if (ordered.size() > slots.length) {
+                // Older than everything a full ring holds; the ring no longer covers the whole room
+                ordered.remove(0);
+                complete = false;
+            }
+            fill(ordered);
+        }
+
+        synchronized long remove(long messageId) {
+            long before = bytes;
+            List<ChatMessageDto> kept = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ChatMessageDto held = slots[(head + i) % slots.length];
+                if (held.getId() != messageId) {
+                    kept.add(held);
+                }
+            }
+            if (kept.size() < size) {
+                fill(kept);
+            }
+            return bytes - before;
+        }
+
+        private void fill(Collection<ChatMessageDto> ordered) {
+            head = 0;
+            size = 0;
+            bytes = 0;
+            for (ChatMessageDto message : ordered) {
+                slots[size++] = message;
+                bytes += sizeOf(message);
+            }
+            for (int i = size; i < slots.length; i++) {
+                slots[i] = null;
+            }
+        }
+
+        synchronized long seed(List<ChatMessageDto> newestFirst, boolean exhaustive) {
+            long before = bytes;
+            TreeMap<Long, ChatMessageDto> merged = new TreeMap<>();
+            for (ChatMessageDto message : newestFirst) {
+                merged.put(message.getId(), message);
+            }
+            // Messages appended meanwhile may not have been flushed to the database yet
+            for (int i = 0; i < size; i++) {
+                ChatMessageDto message = slots[(head + i) % slots.length];
+                merged.put(message.getId(), message);
+            }
+            while (merged.size() > slots.length) {
+                merged.pollFirstEntry();
+                exhaustive = false;
+            }
+            fill(merged.values());
+            seeded = true;
+            complete = exhaustive;
+            return bytes - before;
+        }
+
+        synchronized Snapshot latest(int count) {
+            if (!seeded || (count > size && !complete)) {
+                return null;
+            }
+            int n = Math.min(count, size);
+            List<ChatMessageDto> messages = new ArrayList<>(n);
+            for (int i = size - n; i < size; i++) {
+                messages.add(copy(slots[(head + i) % slots.length]));
+            }
+            return new Snapshot(messages, n < size || !complete);
+        }
+
+        synchronized void advanceStatus(long upToMessageId, String recipientUsername,
+                ChatMessage.MessageStatus status) {
+            for (int i = 0; i < size; i++) {
+                ChatMessageDto message = slots[(head + i) % slots.length];
+                if (message.getId() <= upToMessageId && !recipientUsername.equals(message.getSenderUsername())
+                        && message.getStatus() != null && message.getStatus().ordinal() < status.ordinal()) {
+                    message.setStatus(status);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.abhijeet.chat_application.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs work for a chat room on one of N single-threaded lanes chosen by
+ * hashing the room id.
+ *
+ * All work for a room lands on the same lane and runs in submission order,
+ * so two messages to one room never race through persistence or status
+ * updates. Different rooms spread across lanes and run in parallel. When a
+ * lane's queue is full, the submitting thread blocks until space frees up,
+ * which pushes back on the inbound channel rather than reordering work.
+ *
+ * On shutdown the lanes are drained before the persistence pipeline stops
+ * (see {@link #PHASE}), so messages already accepted from clients are still
+ * handed to the pipeline and written.
+ */
+@Slf4j
+@Component
+public class RoomExecutor implements SmartLifecycle {
+
+    // Stops after the STOMP handlers (DEFAULT_PHASE) and before MessagePersistencePipeline
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 512;
+
+    @Value("${chat.rooms.lanes:0}")
+    private int laneCount;
+
+    @Value("${chat.rooms.lane-queue-capacity:10000}")
+    private int laneQueueCapacity;
+
+    @Value("${chat.rooms.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+
+    private ThreadPoolExecutor[] lanes;
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors() * 2;
+        lanes = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            String name = "room-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(laneQueueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, executor) -> {
+                        if (executor.isShutdown()) {
+                            log.warn("Dropping room task submitted after shutdown");
+                            return;
+                        }
+                        try {
+                            executor.getQueue().put(runnable);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+        }
+        running = true;
+    }
+
+    @Override
+    public void start() {
+        // Lanes are created at construction so tasks can be submitted before the context finishes starting
+    }
+
+    /**
+     * Stop taking new tasks and wait, up to chat.rooms.drain-timeout-ms in
+     * total, for every lane to run the tasks already queued.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + drainTimeoutMs;
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !lane.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long abandoned = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            abandoned += lane.getQueue().size();
+        }
+        if (abandoned > 0) {
+            log.warn("Room lanes did not drain within {} ms; {} tasks were not run", drainTimeoutMs, abandoned);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Run the task on the lane owning the room. A null room id (the public
+     * room) maps to lane 0.
+     */
+    public void execute(Long chatRoomId, Runnable task) {
+        int lane = chatRoomId == null ? 0 : Math.floorMod(Long.hashCode(chatRoomId), lanes.length);
+        lanes[lane].execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Room task for room {} failed", chatRoomId, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.config.TieredCache;
+import com.abhijeet.chat_application.repository.ChatRoomRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last-message preview per room, cached under room_last_message::{roomId}.
+ *
+ * A new message overwrites its room's single entry, however many participants
+ * the room has; the per-user sidebar is joined from these entries at read time.
+ */
+@Component
+@RequiredArgsConstructor
+public class RoomPreviewCache {
+
+    public static final String CACHE_NAME = "room_last_message";
+
+    private final CacheManager cacheManager;
+    private final ChatRoomRepository chatRoomRepository;
+
+    public void put(Long chatRoomId, String preview) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache != null && preview != null) {
+            cache.put(chatRoomId, preview);
+        }
+    }
+
+    /**
+     * Previews for the given rooms. Cached previews are read in one round
+     * trip; rooms missing from the cache are loaded with one query and cached
+     * unless a newer preview was written meanwhile. Rooms without any message
+     * are left out.
+     */
+    public Map<Long, String> getAll(Collection<Long> chatRoomIds) {
+        Map<Long, String> previews = new HashMap<>();
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        List<Long> missing = new ArrayList<>();
+        if (cache instanceof TieredCache tiered) {
+            Map<Object, Object> cached = tiered.getAll(chatRoomIds);
+            for (Long chatRoomId : chatRoomIds) {
+                if (cached.get(chatRoomId) instanceof String preview) {
+                    previews.put(chatRoomId, preview);
+                } else {
+                    missing.add(chatRoomId);
+                }
+            }
+        } else {
+            for (Long chatRoomId : chatRoomIds) {
+                String preview = cache != null ? cache.get(chatRoomId, String.class) : null;
+                if (preview != null) {
+                    previews.put(chatRoomId, preview);
+                } else {
+                    missing.add(chatRoomId);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Object[] row : chatRoomRepository.findLastMessagesByIdIn(missing)) {
+                Long chatRoomId = (Long) row[0];
+                String preview = (String) row[1];
+                // A message written after the query keeps its preview; the loaded one is older
+                Cache.ValueWrapper newer = cache != null && preview != null ? cache.putIfAbsent(chatRoomId, preview) : null;
+                previews.put(chatRoomId, newer != null && newer.get() instanceof String current ? current : preview);
+            }
+        }
+        return previews;
+    }
+}
@@ -0,0 +1,87 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.dto.ChatMessageDto;
+import com.abhijeet.chat_application.dto.ChatRoomDto;
+import com.abhijeet.chat_application.dto.SyncResponse;
+import com.abhijeet.chat_application.entity.ChatMessage;
+import com.abhijeet.chat_application.entity.ChatRoom;
+import com.abhijeet.chat_application.entity.id.TimeOrderedIds;
+import com.abhijeet.chat_application.repository.ChatMessageRepository;
+import com.abhijeet.chat_application.repository.ChatRoomRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class SyncService {
+
+    private static final int MAX_SYNC_MESSAGES = 500;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatRoomRepository chatRoomRepository;
+    private final ChatMessageService chatMessageService;
+
+    @Value("${chat.persistence.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${chat.sync.max-clock-skew-ms:2000}")
+    private long maxClockSkewMs;
+
+    /**
+     * Collect what the user missed since the given message id in one round
+     * trip: new messages across all their rooms, rooms whose last message
+     * changed, and current unread counts. This replaces the per-room history,
+     * unread-count, last-message and friends fetches a client makes on
+     * reconnect.
+     *
+     * Messages are written behind and their ids come from each node's clock,
+     * so a message can commit after one with a higher id. The returned
+     * watermark therefore never passes ids issued within the last flush
+     * interval plus chat.sync.max-clock-skew-ms; newer messages are returned
+     * again by the next sync and clients dedupe them by id.
+     */
+    @Transactional(readOnly = true)
+    public SyncResponse sync(String username, Long since) {
+        long watermark = since != null ? since : 0L;
+        List<ChatMessage> rows = chatMessageRepository.findByParticipantSince(username, watermark,
+                TimeOrderedIds.issuedNotBefore(watermark, maxClockSkewMs), Limit.of(MAX_SYNC_MESSAGES + 1));
+        boolean hasMore = rows.size() > MAX_SYNC_MESSAGES;
+        List<ChatMessage> messages = hasMore ? rows.subList(0, MAX_SYNC_MESSAGES) : rows;
+
+        long nextWatermark = watermark;
+        if (!messages.isEmpty()) {
+            long settled = TimeOrderedIds.lowestIdAt(System.currentTimeMillis() - flushIntervalMs - maxClockSkewMs) - 1;
+            long last = messages.get(messages.size() - 1).getId();
+            if (last > settled) {
+                // The rest of the page is still settling; it is fetched again next time rather than paged through now
+                hasMore = false;
+            }
+            nextWatermark = Math.max(watermark, Math.min(last, settled));
+        }
+
+        // Room updates are keyed on time; ids carry the time they were issued
+        LocalDateTime sinceTime = since == null ? null : TimeOrderedIds.issuedNotBefore(since, maxClockSkewMs);
+        List<ChatRoom> changedRooms = sinceTime == null
+                ? chatRoomRepository.findByParticipantsUsername(username)
+                : chatRoomRepository.findByParticipantsUsernameAndLastMessageTimestampAfter(username, sinceTime);
+        List<ChatRoomDto> rooms = changedRooms.stream().map(ChatRoomDto::from).toList();
+
+        // Same READ status as the history endpoints show
+        List<ChatMessageDto> messageDtos = messages.stream().map(ChatMessageDto::from).toList();
+        chatMessageService.applyReadCursors(messageDtos);
+
+        return SyncResponse.builder()
+                .messages(messageDtos)
+                .rooms(rooms)
+                .unreadCounts(chatMessageService.getUnreadCounts(username))
+                .watermark(nextWatermark)
+                .hasMore(hasMore)
+                .build();
+    }
+}
@@ -6,7 +6,8 @@ import com.abhijeet.chat_application.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -19,14 +20,11 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
     }
 
-    public void disconnect(User user) {
-        user.setOnline(false);
-        user.setLastSeen(LocalDateTime.now());
-        userRepository.save(user);
+    public List<User> getUsersByIds(Collection<Long> ids) {
+        return userRepository.findAllById(ids);
     }
 
-    public void connect(User user) {
-        user.setOnline(true);
-        userRepository.save(user);
+    public List<User> getUsersByUsernames(Collection<String> usernames) {
+        return userRepository.findByUsernameIn(usernames);
     }
 }
@@ -0,0 +1,173 @@
+package com.abhijeet.chat_application.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Converts a populated plain chat_messages table, shaped like the one the
+ * entities generate, and checks that every row survives, that new rows land
+ * in the month partitions and that history queries only touch the partitions
+ * of their range. Postgres runs in a container, so the test needs no
+ * configured environment.
+ */
+@Testcontainers
+class ChatMessagePartitionManagerIntegrationTests {
+
+    private static final int ROWS = 5000;
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Container
+    private static final PostgreSQLContainer POSTGRES = new PostgreSQLContainer("postgres:16-alpine");
+
+    private JdbcTemplate jdbcTemplate;
+    private ChatMessagePartitionManager manager;
+    private YearMonth cutover;
+
+    @BeforeEach
+    void createPlainTable() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        manager = new ChatMessagePartitionManager(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "partitionsAhead", 2);
+        cutover = YearMonth.now().plusMonths(1);
+
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+        jdbcTemplate.execute("CREATE TABLE users (id bigint PRIMARY KEY, username varchar(255) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE chat_rooms (id bigint PRIMARY KEY)");
+        jdbcTemplate.execute("""
+                CREATE TABLE chat_messages (
+                    id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                    chat_room_id bigint REFERENCES chat_rooms (id),
+                    sender_id bigint NOT NULL REFERENCES users (id),
+                    content text,
+                    type varchar(255),
+                    status varchar(255),
+                    timestamp timestamp(6)
+                )
+                """);
+        jdbcTemplate.execute("CREATE INDEX idx_chat_timestamp ON chat_messages (chat_room_id, timestamp)");
+        jdbcTemplate.execute("CREATE INDEX idx_chat_room_id ON chat_messages (chat_room_id, id)");
+        jdbcTemplate.execute("CREATE INDEX idx_sender_status ON chat_messages (sender_id, status)");
+        jdbcTemplate.update("INSERT INTO users (id, username) VALUES (1, 'alice')");
+        jdbcTemplate.update("INSERT INTO chat_rooms (id) VALUES (1)");
+        // One message an hour going back about seven months, plus a few rows from before timestamps were set
+        jdbcTemplate.update("""
+                INSERT INTO chat_messages (chat_room_id, sender_id, content, type, status, timestamp)
+                SELECT 1, 1, 'message ' || g, 'CHAT', 'SENT', localtimestamp - g * interval '1 hour'
+                FROM generate_series(1, ?) g
+                """, ROWS - 5);
+        jdbcTemplate.update("""
+                INSERT INTO chat_messages (chat_room_id, sender_id, content, type, status)
+                SELECT 1, 1, 'old', 'CHAT', 'SENT' FROM generate_series(1, 5)
+                """);
+    }
+
+    @Test
+    void convertsPopulatedTableKeepingEveryRow() {
+        manager.run(null);
+
+        assertEquals("p", relkind("chat_messages"));
+        assertEquals(ROWS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages", Integer.class));
+        assertEquals(ROWS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + legacy(), Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages WHERE timestamp IS NULL",
+                Integer.class));
+    }
+
+    @Test
+    void routesNewRowsToMonthPartitions() {
+        manager.run(null);
+
+        assertEquals(legacy(), insertedInto(1L, LocalDateTime.now()));
+        assertEquals(month(cutover), insertedInto(2L, cutover.atDay(1).atStartOfDay()));
+        assertEquals(month(cutover.plusMonths(1)), insertedInto(3L, cutover.plusMonths(1).atDay(15).atTime(12, 0)));
+        assertEquals("chat_messages_default", insertedInto(4L, cutover.plusMonths(5).atDay(1).atStartOfDay()));
+    }
+
+    @Test
+    void historyQueriesPrunePartitionsOutsideTheirRange() {
+        manager.run(null);
+
+        String before = LocalDateTime.now().minusDays(3).withNano(0).toString();
+        String olderPage = explain("SELECT id FROM chat_messages WHERE chat_room_id = 1 AND (timestamp < '" + before
+                + "' OR (timestamp = '" + before + "' AND id < 100)) ORDER BY timestamp DESC, id DESC LIMIT 50");
+        assertTrue(olderPage.contains(legacy()), olderPage);
+        assertFalse(olderPage.contains("chat_messages_p2"), olderPage);
+        assertFalse(olderPage.contains("chat_messages_default"), olderPage);
+
+        String after = cutover.plusMonths(1).atDay(1).atStartOfDay().toString();
+        String newerPage = explain("SELECT id FROM chat_messages WHERE chat_room_id = 1 AND (timestamp > '" + after
+                + "' OR (timestamp = '" + after + "' AND id > 100)) ORDER BY timestamp ASC, id ASC LIMIT 50");
+        assertFalse(newerPage.contains(legacy()), newerPage);
+        assertFalse(newerPage.contains(month(cutover)), newerPage);
+        assertTrue(newerPage.contains(month(cutover.plusMonths(1))), newerPage);
+    }
+
+    @Test
+    void recoversFromAnInterruptedAttempt() {
+        // What an attempt with an earlier cutover leaves behind: its range constraint and an invalid index
+        jdbcTemplate.execute("ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_pre_200001_range "
+                + "CHECK (timestamp IS NOT NULL AND timestamp < '2000-01-01') NOT VALID");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX chat_messages_id_timestamp_pre ON chat_messages (id, timestamp)");
+        jdbcTemplate.update("UPDATE pg_index SET indisvalid = false "
+                + "WHERE indexrelid = 'chat_messages_id_timestamp_pre'::regclass");
+
+        manager.run(null);
+
+        assertEquals("p", relkind("chat_messages"));
+        assertEquals(ROWS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname LIKE 'chat\\_messages\\_pre\\_%\\_range'",
+                Integer.class));
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT indisvalid FROM pg_index WHERE indexrelid = 'chat_messages_id_timestamp_pre'::regclass",
+                Boolean.class));
+    }
+
+    private String insertedInto(long id, LocalDateTime timestamp) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO chat_messages (id, chat_room_id, sender_id, content, type, status, timestamp)
+                VALUES (?, 1, 1, 'new', 'CHAT', 'SENT', ?)
+                RETURNING tableoid::regclass::text
+                """, String.class, 1_000_000L + id, Timestamp.valueOf(timestamp));
+    }
+
+    private String explain(String sql) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+        return String.join("\n", plan);
+    }
+
+    private String relkind(String table) {
+        return jdbcTemplate.queryForObject("SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)",
+                String.class, table);
+    }
+
+    private String legacy() {
+        return "chat_messages_pre_" + cutover.format(SUFFIX);
+    }
+
+    private static String month(YearMonth month) {
+        return "chat_messages_p" + month.format(SUFFIX);
+    }
+}
@@ -0,0 +1,165 @@
+package com.abhijeet.chat_application.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.MimeTypeUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two relays sharing one Redis, each standing in for a node with its own
+ * node id and broker channel: a broadcast published on node A must reach
+ * node B on every destination, in publish order, and never come back to A.
+ * Redis runs in a container, so the test needs no configured environment.
+ */
+@Testcontainers
+class ClusterBrokerRelayIntegrationTests {
+
+    private static final String ROOM_TOPIC = "/topic/chatrooms/424242";
+    private static final String USER_TOPIC = "/topic/user.cluster-test";
+    private static final int MESSAGES = 200;
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private Node nodeA;
+    private Node nodeB;
+
+    // Messages a node's relay handed to its local broker, as "destination payload"
+    private record Node(ClusterBrokerRelay relay, BlockingQueue<String> delivered) {
+    }
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterEach
+    void stopNodes() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+    }
+
+    @Test
+    void deliversBroadcastsToOtherNodeInOrder() throws Exception {
+        awaitSubscribed();
+
+        for (int i = 0; i < MESSAGES; i++) {
+            nodeA.relay().publish(List.of(ROOM_TOPIC, USER_TOPIC), MimeTypeUtils.APPLICATION_JSON,
+                    ("{\"seq\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<String> expected = new ArrayList<>(MESSAGES * 2);
+        for (int i = 0; i < MESSAGES; i++) {
+            expected.add(ROOM_TOPIC + " {\"seq\":" + i + "}");
+            expected.add(USER_TOPIC + " {\"seq\":" + i + "}");
+        }
+        assertEquals(expected, receive(nodeB.delivered(), expected.size()));
+        // A node ignores its own publishes; its local broker already has them
+        assertTrue(nodeA.delivered().isEmpty());
+    }
+
+    @Test
+    void leavesOutDestinationsOutsideTopic() throws Exception {
+        awaitSubscribed();
+
+        nodeA.relay().publish(List.of("/queue/private", ROOM_TOPIC), MimeTypeUtils.APPLICATION_JSON,
+                "{}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of(ROOM_TOPIC + " {}"), receive(nodeB.delivered(), 1));
+    }
+
+    private Node startNode() {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        resources.add(connectionFactory::destroy);
+
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+
+        BlockingQueue<String> delivered = new LinkedBlockingQueue<>();
+        MessageChannel brokerChannel = (Message<?> message, long timeout) -> {
+            delivered.add(SimpMessageHeaderAccessor.getDestination(message.getHeaders()) + " "
+                    + new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+            return true;
+        };
+        ClusterBrokerRelay relay = new ClusterBrokerRelay(template, brokerChannel,
+                new DefaultListableBeanFactory().getBeanProvider(ClusterBrokerRelay.RemoteBroadcastListener.class));
+
+        // Same single-threaded listener setup as ClusterBrokerConfig
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.initialize();
+        resources.add(executor::shutdown);
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(executor);
+        container.addMessageListener(relay, new ChannelTopic(ClusterBrokerRelay.CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+        resources.add(container::destroy);
+        return new Node(relay, delivered);
+    }
+
+    // Subscribing is asynchronous; probe until node B hears node A
+    private void awaitSubscribed() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (nodeB.delivered().isEmpty()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Node B never received a relayed probe");
+            }
+            nodeA.relay().publish(List.of(ROOM_TOPIC), MimeTypeUtils.APPLICATION_JSON,
+                    "probe".getBytes(StandardCharsets.UTF_8));
+            Thread.sleep(100);
+        }
+        Thread.sleep(200);
+        nodeA.delivered().clear();
+        nodeB.delivered().clear();
+    }
+
+    private static List<String> receive(BlockingQueue<String> delivered, int count) throws InterruptedException {
+        List<String> received = new ArrayList<>(count);
+        while (received.size() < count) {
+            String message = delivered.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message, "Timed out after " + received.size() + " relayed messages");
+            if (!message.endsWith(" probe")) {
+                received.add(message);
+            }
+        }
+        return received;
+    }
+}
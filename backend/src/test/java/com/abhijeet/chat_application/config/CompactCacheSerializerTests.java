@@ -0,0 +1,63 @@
+package com.abhijeet.chat_application.config;
+
+import com.abhijeet.chat_application.dto.DirectRoomRef;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompactCacheSerializerTests {
+
+    private final CompactCacheSerializer serializer = new CompactCacheSerializer(256);
+
+    @Test
+    void smallValuesRoundTripAsPlainJson() {
+        List<DirectRoomRef> rooms = new ArrayList<>(List.of(
+                DirectRoomRef.builder().chatRoomId(1L).username("alice").build(),
+                DirectRoomRef.builder().chatRoomId(2L).username("bob").build()));
+
+        byte[] bytes = serializer.serialize(rooms);
+
+        assertEquals(0, bytes[0]);
+        assertEquals(rooms, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void largeValuesRoundTripGzipped() {
+        String preview = "x".repeat(4096);
+
+        byte[] bytes = serializer.serialize(preview);
+
+        assertEquals(1, bytes[0]);
+        assertEquals(preview, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void entriesWrittenByTheJdkSerializerReadAsMiss() {
+        byte[] bytes = RedisSerializer.java().serialize("preview");
+
+        assertNull(serializer.deserialize(bytes));
+    }
+
+    @Test
+    void typesOutsideTheAllowlistAreRejected() {
+        String json = "{\"@class\":\"java.net.InetSocketAddress\",\"hostName\":\"localhost\",\"port\":80}";
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[body.length + 1];
+        System.arraycopy(body, 0, bytes, 1, body.length);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    @Test
+    void unknownFormatMarkerIsRejected() {
+        assertThrows(SerializationException.class, () -> serializer.deserialize(new byte[] { 7, '{', '}' }));
+    }
+}
@@ -0,0 +1,154 @@
+package com.abhijeet.chat_application.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TieredCacheTests {
+
+    private static final String CACHE = "test_cache";
+
+    // Stands in for Redis: both nodes share the same L2
+    private ConcurrentMapCacheManager remote;
+    private StringRedisTemplate redisTemplate;
+    private TieredCacheManager nodeA;
+    private TieredCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager();
+        redisTemplate = mock(StringRedisTemplate.class);
+        nodeA = new TieredCacheManager(remote, redisTemplate, null, 100, Duration.ofMinutes(1));
+        nodeB = new TieredCacheManager(remote, redisTemplate, null, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void readsFillL1FromL2() {
+        remote.getCache(CACHE).put("k", "v1");
+        TieredCache cache = (TieredCache) nodeA.getCache(CACHE);
+
+        assertEquals("v1", cache.get("k", String.class));
+        assertEquals("v1", cache.get("k", String.class));
+
+        assertEquals(1, cache.remoteHits.sum());
+        assertEquals(1, cache.localHits.sum());
+    }
+
+    @Test
+    void getAllReadsL1ThenL2AndLeavesOutMisses() {
+        remote.getCache(CACHE).put("2", "v2");
+        TieredCache cache = (TieredCache) nodeA.getCache(CACHE);
+        cache.put(1L, "v1");
+
+        assertEquals(Map.of(1L, "v1", 2L, "v2"), cache.getAll(List.of(1L, 2L, 3L)));
+        assertEquals(1, cache.localHits.sum());
+        assertEquals(1, cache.remoteHits.sum());
+        assertEquals(1, cache.remoteMisses.sum());
+        // L2 hits now sit in L1
+        assertEquals("v2", cache.get(2L, String.class));
+        assertEquals(2, cache.localHits.sum());
+    }
+
+    @Test
+    void evictionOnOneNodeDropsTheOtherNodesL1() {
+        Cache a = nodeA.getCache(CACHE);
+        Cache b = nodeB.getCache(CACHE);
+        a.put("k", "v1");
+        assertEquals("v1", b.get("k", String.class));
+
+        a.put("k", "v2");
+        // Without the invalidation message node B still serves its L1 copy
+        assertEquals("v1", b.get("k", String.class));
+        deliverLastInvalidationTo(nodeB);
+        assertEquals("v2", b.get("k", String.class));
+
+        a.evict("k");
+        deliverLastInvalidationTo(nodeB);
+        assertNull(b.get("k"));
+    }
+
+    @Test
+    void unchangedValuesAndFillsAreNotAnnounced() {
+        Cache a = nodeA.getCache(CACHE);
+        a.put("k", List.of("x"));
+        clearInvocations(redisTemplate);
+
+        a.put("k", new ArrayList<>(List.of("x")));
+        assertNull(a.putIfAbsent("fresh", "v1"));
+        assertEquals("v1", a.putIfAbsent("fresh", "v2").get());
+
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+        assertEquals("v1", nodeB.getCache(CACHE).get("fresh", String.class));
+    }
+
+    @Test
+    void clearIsAnnouncedAsWholeCacheEviction() {
+        Cache a = nodeA.getCache(CACHE);
+        Cache b = nodeB.getCache(CACHE);
+        a.put("k1", "v1");
+        a.put("k2", "v2");
+        b.get("k1");
+        b.get("k2");
+
+        a.clear();
+        deliverLastInvalidationTo(nodeB);
+
+        assertNull(b.get("k1"));
+        assertNull(b.get("k2"));
+    }
+
+    @Test
+    void ownInvalidationMessagesAreIgnored() {
+        Cache a = nodeA.getCache(CACHE);
+        a.put("k", "v1");
+
+        deliverLastInvalidationTo(nodeA);
+
+        TieredCache tiered = (TieredCache) a;
+        assertEquals("v1", a.get("k", String.class));
+        assertEquals(1, tiered.localHits.sum());
+    }
+
+    @Test
+    void l1ValuesCannotBeChangedByCallers() {
+        Cache a = nodeA.getCache(CACHE);
+        List<String> written = new ArrayList<>(List.of("x"));
+        a.put("k", written);
+
+        // The writer's own list stays its own
+        written.add("y");
+        @SuppressWarnings("unchecked")
+        List<String> read = a.get("k", List.class);
+        assertEquals(List.of("x"), read);
+        assertThrows(UnsupportedOperationException.class, () -> read.add("z"));
+        assertEquals(List.of("x"), a.get("k", List.class));
+    }
+
+    private void deliverLastInvalidationTo(TieredCacheManager node) {
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, atLeastOnce()).convertAndSend(eq(TieredCacheManager.CHANNEL), message.capture());
+        byte[] body = message.getValue().getBytes(StandardCharsets.UTF_8);
+        node.onMessage(new DefaultMessage(TieredCacheManager.CHANNEL.getBytes(StandardCharsets.UTF_8), body), null);
+    }
+}
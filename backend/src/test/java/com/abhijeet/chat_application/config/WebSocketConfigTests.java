@@ -0,0 +1,38 @@
+package com.abhijeet.chat_application.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.security.Principal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebSocketConfigTests {
+
+    private static final Principal ALICE = new UsernamePasswordAuthenticationToken("alice", null, List.of());
+
+    @Test
+    void usersMaySubscribeToTheirOwnTopicsOnly() {
+        assertTrue(WebSocketConfig.maySubscribe(ALICE, "/topic/presence.alice"));
+        assertTrue(WebSocketConfig.maySubscribe(ALICE, "/topic/user.alice"));
+
+        assertFalse(WebSocketConfig.maySubscribe(ALICE, "/topic/presence.bob"));
+        assertFalse(WebSocketConfig.maySubscribe(ALICE, "/topic/user.bob"));
+        assertFalse(WebSocketConfig.maySubscribe(ALICE, "/topic/presence.alice2"));
+        assertFalse(WebSocketConfig.maySubscribe(null, "/topic/presence.alice"));
+    }
+
+    @Test
+    void wildcardsAreRefused() {
+        assertFalse(WebSocketConfig.maySubscribe(ALICE, "/topic/presence.*"));
+        assertFalse(WebSocketConfig.maySubscribe(ALICE, "/topic/**"));
+    }
+
+    @Test
+    void roomTopicsAreNotRestrictedHere() {
+        assertTrue(WebSocketConfig.maySubscribe(ALICE, "/topic/chatrooms/7"));
+        assertTrue(WebSocketConfig.maySubscribe(ALICE, "/topic/public"));
+    }
+}
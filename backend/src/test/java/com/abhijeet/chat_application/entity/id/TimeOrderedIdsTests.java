@@ -0,0 +1,105 @@
+package com.abhijeet.chat_application.entity.id;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedIdsTests {
+
+    private static final int SEQUENCE_BITS = 8;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long NODE_MASK = TimeOrderedIds.MAX_NODE;
+
+    @AfterEach
+    void resetNodeId() {
+        TimeOrderedIds.setNodeId(0L);
+    }
+
+    @Test
+    void embedsTimestampAndNodeId() {
+        TimeOrderedIds.setNodeId(21L);
+        long before = System.currentTimeMillis();
+        long id = TimeOrderedIds.next();
+        long after = System.currentTimeMillis();
+
+        assertEquals(21L, (id >>> SEQUENCE_BITS) & NODE_MASK);
+        long issuedAt = TimeOrderedIds.timestampOf(id);
+        assertTrue(issuedAt >= before && issuedAt <= after, "timestamp bits should hold the issue time");
+    }
+
+    @Test
+    void fitsInJavaScriptSafeInteger() {
+        TimeOrderedIds.setNodeId(TimeOrderedIds.MAX_NODE);
+        long id = TimeOrderedIds.next();
+        assertTrue(id > 0 && id <= (1L << 53) - 1);
+    }
+
+    @Test
+    void issuesStrictlyIncreasingIds() {
+        long previous = TimeOrderedIds.next();
+        for (int i = 0; i < 100_000; i++) {
+            long id = TimeOrderedIds.next();
+            assertTrue(id > previous, "id " + id + " should be greater than " + previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void rollsOverToNextMillisecondWhenSequenceRunsOut() {
+        long[] ids = new long[20_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = TimeOrderedIds.next();
+        }
+        for (int i = 1; i < ids.length; i++) {
+            long previousSequence = ids[i - 1] & SEQUENCE_MASK;
+            if (previousSequence == SEQUENCE_MASK) {
+                // A full millisecond: the next id must start a later millisecond at sequence 0
+                assertEquals(0L, ids[i] & SEQUENCE_MASK);
+                assertTrue(TimeOrderedIds.timestampOf(ids[i]) > TimeOrderedIds.timestampOf(ids[i - 1]));
+            } else if (TimeOrderedIds.timestampOf(ids[i]) == TimeOrderedIds.timestampOf(ids[i - 1])) {
+                assertEquals(previousSequence + 1, ids[i] & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> TimeOrderedIds.setNodeId(TimeOrderedIds.MAX_NODE + 1));
+        assertThrows(IllegalArgumentException.class, () -> TimeOrderedIds.setNodeId(-1L));
+    }
+
+    @Test
+    void issuedNotBeforeAllowsForSlack() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        long issuedAt = Instant.parse("2025-07-01T10:00:00Z").toEpochMilli();
+        long id = TimeOrderedIds.lowestIdAt(issuedAt);
+
+        LocalDateTime expected = LocalDateTime.ofInstant(Instant.ofEpochMilli(issuedAt - 2000), berlin);
+        assertEquals(expected, TimeOrderedIds.issuedNotBefore(id, 2000, berlin));
+    }
+
+    @Test
+    void issuedNotBeforeCoversTheRepeatedHourWhenClocksGoBack() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        // 02:50 summer time, ten minutes before the clocks go back from 03:00 to 02:00
+        long id = TimeOrderedIds.lowestIdAt(Instant.parse("2025-10-26T00:50:00Z").toEpochMilli());
+
+        // A row written 20 minutes later is stamped 02:10 local time
+        assertEquals(LocalDateTime.of(2025, 10, 26, 2, 0), TimeOrderedIds.issuedNotBefore(id, 0, berlin));
+    }
+
+    @Test
+    void sequentialIdsGiveNoTimestampBound() {
+        LocalDateTime unbounded = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+        assertEquals(unbounded, TimeOrderedIds.issuedNotBefore(0L, 2000));
+        assertEquals(unbounded, TimeOrderedIds.issuedNotBefore(12_345_678L, 2000));
+    }
+}
@@ -0,0 +1,184 @@
+package com.abhijeet.chat_application.repository;
+
+import com.abhijeet.chat_application.dto.ChatMessageDto;
+import com.abhijeet.chat_application.entity.ChatMessage;
+import com.abhijeet.chat_application.entity.ChatRoom;
+import com.abhijeet.chat_application.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Counts the SQL statements of the history, sidebar and room lookup paths
+ * with Hibernate statistics. Each path runs against a small and a larger data
+ * set, and the two counts must match: a lazy association touched per row
+ * (N+1) makes the count grow with the data and fails the test. Runs against
+ * the configured database, like the context-load test.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class FetchPlanStatementCountTests {
+
+    private static final int SMALL_ROOMS = 1;
+    private static final int SMALL_MESSAGES = 5;
+    private static final int LARGE_ROOMS = 6;
+    private static final int LARGE_MESSAGES = 40;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ChatRoomRepository chatRoomRepository;
+
+    private Statistics statistics;
+
+    // One user with a direct room per partner plus a group room with all of them,
+    // each room holding the same number of messages
+    private record Fixture(String username, List<ChatRoom> directRooms, ChatRoom groupRoom, int messagesPerRoom) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void historyPageLoadsSendersInOneStatement() {
+        long small = statements(seed(SMALL_ROOMS, SMALL_MESSAGES), this::loadHistory);
+        long large = statements(seed(LARGE_ROOMS, LARGE_MESSAGES), this::loadHistory);
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void sidebarRoomsLoadParticipantsInOneStatement() {
+        long small = statements(seed(SMALL_ROOMS, SMALL_MESSAGES), this::loadSidebar);
+        long large = statements(seed(LARGE_ROOMS, LARGE_MESSAGES), this::loadSidebar);
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void roomLookupByIdLoadsParticipantsInOneStatement() {
+        long small = statements(seed(SMALL_ROOMS, SMALL_MESSAGES), this::lookUpById);
+        long large = statements(seed(LARGE_ROOMS, LARGE_MESSAGES), this::lookUpById);
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void directRoomLookupLoadsParticipantsInOneStatement() {
+        long small = statements(seed(SMALL_ROOMS, SMALL_MESSAGES), this::lookUpByDirectKey);
+        long large = statements(seed(LARGE_ROOMS, LARGE_MESSAGES), this::lookUpByDirectKey);
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    private void loadHistory(Fixture fixture) {
+        ChatRoom room = fixture.directRooms().get(0);
+        List<ChatMessage> page = chatMessageRepository.findLatestPage(room.getId(), Limit.of(fixture.messagesPerRoom()));
+        List<ChatMessageDto> dtos = page.stream().map(ChatMessageDto::from).toList();
+
+        assertEquals(fixture.messagesPerRoom(), dtos.size());
+    }
+
+    private void loadSidebar(Fixture fixture) {
+        List<ChatRoom> rooms = chatRoomRepository.findByParticipantsUsername(fixture.username());
+        for (ChatRoom r : rooms) {
+            r.getParticipants().forEach(User::getUsername);
+        }
+
+        assertEquals(fixture.directRooms().size() + 1, rooms.size());
+    }
+
+    private void lookUpById(Fixture fixture) {
+        ChatRoom found = chatRoomRepository.findWithParticipantsById(fixture.groupRoom().getId()).orElseThrow();
+        found.getParticipants().forEach(User::getUsername);
+
+        assertEquals(fixture.directRooms().size() + 1, found.getParticipants().size());
+    }
+
+    private void lookUpByDirectKey(Fixture fixture) {
+        ChatRoom room = fixture.directRooms().get(fixture.directRooms().size() - 1);
+        ChatRoom found = chatRoomRepository.findByDirectKey(room.getDirectKey()).orElseThrow();
+        found.getParticipants().forEach(User::getUsername);
+    }
+
+    // Statements the action prepared, starting from an empty persistence context
+    private long statements(Fixture fixture, Consumer<Fixture> action) {
+        entityManager.clear();
+        statistics.clear();
+        action.accept(fixture);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Fixture seed(int rooms, int messagesPerRoom) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User owner = persist(User.builder().username("alice-" + suffix).password("x").build());
+        List<User> members = new ArrayList<>(List.of(owner));
+        List<ChatRoom> directRooms = new ArrayList<>(rooms);
+        for (int r = 0; r < rooms; r++) {
+            User partner = persist(User.builder().username("bob" + r + "-" + suffix).password("x").build());
+            members.add(partner);
+            ChatRoom room = persist(ChatRoom.builder()
+                    .isGroupChat(false)
+                    .directKey(Math.min(owner.getId(), partner.getId()) + ":" + Math.max(owner.getId(), partner.getId()))
+                    .participants(new ArrayList<>(List.of(owner, partner)))
+                    .build());
+            addMessages(room, List.of(owner, partner), messagesPerRoom);
+            directRooms.add(room);
+        }
+        ChatRoom groupRoom = persist(ChatRoom.builder()
+                .name("group-" + suffix)
+                .isGroupChat(true)
+                .participants(members)
+                .build());
+        addMessages(groupRoom, members, messagesPerRoom);
+        entityManager.flush();
+        entityManager.clear();
+        return new Fixture(owner.getUsername(), directRooms, groupRoom, messagesPerRoom);
+    }
+
+    private void addMessages(ChatRoom room, List<User> senders, int count) {
+        LocalDateTime start = LocalDateTime.now().minusMinutes(count);
+        for (int i = 0; i < count; i++) {
+            persist(ChatMessage.builder()
+                    .chatRoom(room)
+                    .sender(senders.get(i % senders.size()))
+                    .content("message " + i)
+                    .type(ChatMessage.MessageType.CHAT)
+                    .timestamp(start.plusMinutes(i))
+                    .build());
+        }
+    }
+
+    private <T> T persist(T entity) {
+        entityManager.persist(entity);
+        return entity;
+    }
+}
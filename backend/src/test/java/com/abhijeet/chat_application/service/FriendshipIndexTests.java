@@ -0,0 +1,122 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.repository.FriendshipRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FriendshipIndexTests {
+
+    private FriendshipRepository friendshipRepository;
+    private StringRedisTemplate redisTemplate;
+    private FriendshipIndex index;
+
+    @BeforeEach
+    void setUp() {
+        friendshipRepository = mock(FriendshipRepository.class);
+        redisTemplate = mock(StringRedisTemplate.class);
+        index = newIndex();
+    }
+
+    @Test
+    void loadsSortedFriendsOnceAndServesFromMemory() {
+        when(friendshipRepository.findAcceptedFriendIds(1L)).thenReturn(List.of(9L, 3L, 5L));
+
+        assertArrayEquals(new long[] { 3L, 5L, 9L }, index.friendsOf(1L));
+        assertTrue(index.areFriends(1L, 5L));
+        assertFalse(index.areFriends(1L, 4L));
+        verify(friendshipRepository, times(1)).findAcceptedFriendIds(1L);
+    }
+
+    @Test
+    void invalidateReloadsBothUsersAndNotifiesOtherNodes() {
+        when(friendshipRepository.findAcceptedFriendIds(1L)).thenReturn(List.of(), List.of(2L));
+        when(friendshipRepository.findAcceptedFriendIds(2L)).thenReturn(List.of(), List.of(1L));
+        assertFalse(index.areFriends(1L, 2L));
+        assertFalse(index.areFriends(2L, 1L));
+
+        index.invalidate(1L, 2L);
+
+        assertTrue(index.areFriends(1L, 2L));
+        assertTrue(index.areFriends(2L, 1L));
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(FriendshipIndex.CHANNEL), message.capture());
+        assertTrue(message.getValue().endsWith("\n1,2"));
+    }
+
+    @Test
+    void dropsRowsInvalidatedByAnotherNode() {
+        when(friendshipRepository.findAcceptedFriendIds(1L)).thenReturn(List.of(), List.of(2L));
+        assertFalse(index.areFriends(1L, 2L));
+
+        // What another node publishes after accepting the friendship
+        FriendshipIndex otherNode = newIndex();
+        otherNode.invalidate(1L, 2L);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(FriendshipIndex.CHANNEL), message.capture());
+        index.onMessage(redisMessage(message.getValue()), null);
+
+        assertTrue(index.areFriends(1L, 2L));
+    }
+
+    @Test
+    void ignoresItsOwnInvalidationMessages() {
+        when(friendshipRepository.findAcceptedFriendIds(1L)).thenReturn(List.of(2L));
+        index.friendsOf(1L);
+        index.invalidate(1L, 2L);
+        index.friendsOf(1L);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(FriendshipIndex.CHANNEL), message.capture());
+
+        index.onMessage(redisMessage(message.getValue()), null);
+        index.friendsOf(1L);
+
+        verify(friendshipRepository, times(2)).findAcceptedFriendIds(1L);
+    }
+
+    @Test
+    void evictsBeyondMaximumSize() {
+        FriendshipIndex small = newIndex(2);
+        for (long userId = 1; userId <= 50; userId++) {
+            when(friendshipRepository.findAcceptedFriendIds(userId)).thenReturn(List.of());
+            small.friendsOf(userId);
+        }
+        @SuppressWarnings("unchecked")
+        com.github.benmanes.caffeine.cache.Cache<Long, long[]> adjacency =
+                (com.github.benmanes.caffeine.cache.Cache<Long, long[]>) ReflectionTestUtils.getField(small, "adjacency");
+        adjacency.cleanUp();
+        assertTrue(adjacency.estimatedSize() <= 2);
+    }
+
+    private FriendshipIndex newIndex() {
+        return newIndex(1000);
+    }
+
+    private FriendshipIndex newIndex(long maxSize) {
+        FriendshipIndex created = new FriendshipIndex(friendshipRepository, redisTemplate);
+        ReflectionTestUtils.setField(created, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(created, "maxSize", maxSize);
+        created.init();
+        return created;
+    }
+
+    private static DefaultMessage redisMessage(String body) {
+        return new DefaultMessage(FriendshipIndex.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,58 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageCursorTests {
+
+    @Test
+    void roundTripsTimestampAndId() {
+        LocalDateTime timestamp = LocalDateTime.of(2026, 3, 14, 15, 9, 26, 535_897_000);
+        String token = MessageCursor.encode(timestamp, 123_456_789L);
+
+        MessageCursor cursor = MessageCursor.decode(token);
+
+        assertEquals(timestamp, cursor.timestamp());
+        assertEquals(123_456_789L, cursor.id());
+    }
+
+    @Test
+    void encodesAsUrlSafeTokenWithoutPadding() {
+        String token = MessageCursor.encode(LocalDateTime.of(2026, 1, 1, 0, 0), Long.MAX_VALUE);
+        assertFalse(token.contains("="));
+        assertFalse(token.contains("+"));
+        assertFalse(token.contains("/"));
+    }
+
+    @Test
+    void rejectsTokenThatIsNotBase64() {
+        assertThrows(BadRequestException.class, () -> MessageCursor.decode("not a cursor!"));
+    }
+
+    @Test
+    void rejectsTokenWithoutSeparator() {
+        assertThrows(BadRequestException.class, () -> MessageCursor.decode(encodeRaw("2026-01-01T00:00")));
+    }
+
+    @Test
+    void rejectsMalformedTimestamp() {
+        assertThrows(BadRequestException.class, () -> MessageCursor.decode(encodeRaw("yesterday|42")));
+    }
+
+    @Test
+    void rejectsMalformedId() {
+        assertThrows(BadRequestException.class, () -> MessageCursor.decode(encodeRaw("2026-01-01T00:00|abc")));
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,114 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.dto.PresenceDiff;
+import com.abhijeet.chat_application.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PresenceBroadcasterTests {
+
+    private static final User ALICE = User.builder().id(1L).username("alice").build();
+    private static final User DAVE = User.builder().id(4L).username("dave").build();
+    private static final User BOB = User.builder().id(2L).username("bob").build();
+    private static final User CAROL = User.builder().id(3L).username("carol").build();
+
+    private MessageFanoutService messageFanoutService;
+    private PresenceBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        FriendshipIndex friendshipIndex = mock(FriendshipIndex.class);
+        UserService userService = mock(UserService.class);
+        PresenceRegistry presenceRegistry = mock(PresenceRegistry.class);
+        messageFanoutService = mock(MessageFanoutService.class);
+
+        // alice and dave are both friends with bob and carol; only bob is online
+        when(friendshipIndex.friendsOf(1L)).thenReturn(new long[] { 2L, 3L });
+        when(friendshipIndex.friendsOf(4L)).thenReturn(new long[] { 2L, 3L });
+        when(userService.getUsersByIds(any())).thenReturn(List.of(BOB, CAROL));
+        when(presenceRegistry.onlineAmong(any())).thenReturn(Set.of("bob"));
+
+        broadcaster = new PresenceBroadcaster(friendshipIndex, userService, presenceRegistry, messageFanoutService);
+        ReflectionTestUtils.setField(broadcaster, "offlineGraceMs", 0L);
+    }
+
+    @Test
+    void changesReachOnlineFriendsOnlyInOneDiffEach() {
+        broadcaster.online(ALICE);
+        broadcaster.offline(DAVE);
+
+        broadcaster.broadcast();
+
+        PresenceDiff diff = sentTo("bob");
+        assertEquals(List.of("alice"), diff.getOnline());
+        assertEquals(List.of("dave"), diff.getOffline());
+        verify(messageFanoutService, never()).send(eq("/topic/presence.carol"), any());
+    }
+
+    @Test
+    void offlineWaitsForTheGracePeriod() {
+        ReflectionTestUtils.setField(broadcaster, "offlineGraceMs", 60_000L);
+        broadcaster.offline(ALICE);
+
+        broadcaster.broadcast();
+        verify(messageFanoutService, never()).send(anyString(), any());
+
+        ReflectionTestUtils.setField(broadcaster, "offlineGraceMs", 0L);
+        broadcaster.broadcast();
+        assertEquals(List.of("alice"), sentTo("bob").getOffline());
+    }
+
+    @Test
+    void reconnectWithinTheWindowSendsNothing() {
+        broadcaster.offline(ALICE);
+        broadcaster.online(ALICE);
+
+        broadcaster.broadcast();
+
+        verify(messageFanoutService, never()).send(anyString(), any());
+    }
+
+    @Test
+    void oddNumberOfFlipsSendsTheLatestState() {
+        broadcaster.online(ALICE);
+        broadcaster.offline(ALICE);
+        broadcaster.online(ALICE);
+
+        broadcaster.broadcast();
+
+        PresenceDiff diff = sentTo("bob");
+        assertEquals(List.of("alice"), diff.getOnline());
+        assertEquals(List.of(), diff.getOffline());
+    }
+
+    @Test
+    void changesAreSentOnce() {
+        broadcaster.online(ALICE);
+
+        broadcaster.broadcast();
+        broadcaster.broadcast();
+
+        verify(messageFanoutService, times(1)).send(eq("/topic/presence.bob"), any());
+    }
+
+    private PresenceDiff sentTo(String username) {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messageFanoutService).send(eq("/topic/presence." + username), payload.capture());
+        return (PresenceDiff) payload.getValue();
+    }
+}
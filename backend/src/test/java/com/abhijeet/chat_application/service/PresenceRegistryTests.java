@@ -0,0 +1,123 @@
+package com.abhijeet.chat_application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PresenceRegistryTests {
+
+    private StringRedisTemplate redisTemplate;
+    private ApplicationEventPublisher eventPublisher;
+    private PresenceRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        registry = new PresenceRegistry(redisTemplate, mock(JdbcTemplate.class), eventPublisher);
+        ReflectionTestUtils.setField(registry, "brokerMode", "simple");
+        ReflectionTestUtils.setField(registry, "ttlSeconds", 90L);
+    }
+
+    @Test
+    void userStaysOnlineUntilTheirLastSessionCloses() {
+        assertTrue(registry.connect("alice", "s1"));
+        assertFalse(registry.connect("alice", "s2"));
+
+        assertFalse(registry.disconnect("alice", "s1"));
+        assertTrue(registry.isOnline("alice"));
+
+        assertTrue(registry.disconnect("alice", "s2"));
+        assertFalse(registry.isOnline("alice"));
+    }
+
+    @Test
+    void repeatedDisconnectEventsAreIgnored() {
+        registry.connect("alice", "s1");
+        registry.connect("alice", "s2");
+
+        assertFalse(registry.disconnect("alice", "s1"));
+        assertFalse(registry.disconnect("alice", "s1"));
+        assertTrue(registry.isOnline("alice"));
+
+        assertTrue(registry.disconnect("alice", "s2"));
+        assertFalse(registry.disconnect("alice", "s2"));
+    }
+
+    @Test
+    void reconnectAfterLastSessionComesOnlineAgain() {
+        registry.connect("alice", "s1");
+        registry.disconnect("alice", "s1");
+
+        assertTrue(registry.connect("alice", "s2"));
+    }
+
+    @Test
+    void onlineAmongCountsUsersWithAnySession() {
+        registry.connect("alice", "s1");
+        registry.connect("alice", "s2");
+        registry.connect("bob", "s3");
+        registry.disconnect("bob", "s3");
+
+        assertEquals(Set.of("alice"), registry.onlineAmong(List.of("alice", "bob", "carol")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shutdownAnnouncesUsersNoOtherNodeHolds() {
+        ReflectionTestUtils.setField(registry, "brokerMode", "redis");
+        String now = String.valueOf(System.currentTimeMillis());
+        // Connect sees only this node; on shutdown no other node holds alice either
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.<Object>of(1L, 1L, 1L, List.of(now)))
+                .thenReturn(List.<Object>of(1L, List.of(), 1L, 1L));
+        registry.connect("alice", "s1");
+
+        registry.shutdown();
+
+        verify(eventPublisher).publishEvent(new PresenceExpiredEvent(List.of("alice")));
+        assertFalse(registry.disconnect("alice", "s1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shutdownLeavesUsersOnlineElsewhereAlone() {
+        ReflectionTestUtils.setField(registry, "brokerMode", "redis");
+        String now = String.valueOf(System.currentTimeMillis());
+        // alice also has a session on another live node
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.<Object>of(1L, 1L, 1L, List.of(now, now)))
+                .thenReturn(List.<Object>of(1L, List.of(now), 1L, 1L));
+        registry.connect("alice", "s1");
+
+        registry.shutdown();
+
+        verify(eventPublisher, never()).publishEvent(any(PresenceExpiredEvent.class));
+    }
+
+    @Test
+    void staleHeartbeatsDoNotCount() {
+        long cutoff = 1_000_000L;
+
+        assertEquals(2, PresenceRegistry.liveNodes(List.of("1000000", "2000000".getBytes(StandardCharsets.UTF_8),
+                "999999", "1"), cutoff));
+        assertEquals(0, PresenceRegistry.liveNodes(List.of(), cutoff));
+    }
+}
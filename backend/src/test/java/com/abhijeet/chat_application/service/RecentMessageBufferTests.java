@@ -0,0 +1,219 @@
+package com.abhijeet.chat_application.service;
+
+import com.abhijeet.chat_application.dto.ChatMessageDto;
+import com.abhijeet.chat_application.entity.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecentMessageBufferTests {
+
+    private static final Long ROOM = 7L;
+
+    // Estimated size of a message from message(): overhead plus one char each of content and sender
+    private static final long MESSAGE_BYTES = 164;
+
+    private MessageConverter converter;
+    private RecentMessageBuffer buffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MeterRegistry> meterRegistry = mock(ObjectProvider.class);
+        ObjectProvider<SimpMessagingTemplate> messagingTemplate = mock(ObjectProvider.class);
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        converter = mock(MessageConverter.class);
+        when(messagingTemplate.getIfAvailable()).thenReturn(template);
+        when(template.getMessageConverter()).thenReturn(converter);
+
+        buffer = new RecentMessageBuffer(meterRegistry, messagingTemplate);
+        ReflectionTestUtils.setField(buffer, "capacity", 3);
+        ReflectionTestUtils.setField(buffer, "maxBytes", 1_000_000L);
+    }
+
+    @Test
+    void unseededRoomIsAMiss() {
+        assertNull(buffer.latest(ROOM, 1));
+        buffer.append(message(ROOM, 1L));
+
+        assertNull(buffer.latest(ROOM, 1));
+    }
+
+    @Test
+    void roomsNobodyReadsAreNotBuffered() {
+        buffer.append(message(ROOM, 1L));
+        assertNull(buffer.latest(ROOM, 1));
+        buffer.append(message(ROOM, 2L));
+        buffer.seed(ROOM, List.of());
+
+        // Only what arrived after the first read is kept
+        assertEquals(List.of(2L), ids(buffer.latest(ROOM, 3)));
+    }
+
+    @Test
+    void lateArrivalsAreInsertedById() {
+        buffer.seed(ROOM, List.of());
+        buffer.append(message(ROOM, 1L));
+        buffer.append(message(ROOM, 3L));
+        buffer.append(message(ROOM, 2L));
+        buffer.append(message(ROOM, 2L));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(buffer.latest(ROOM, 3)));
+
+        // Older than everything in a full ring: kept out, and the ring no longer covers the room
+        buffer.append(message(ROOM, 0L));
+        assertEquals(List.of(1L, 2L, 3L), ids(buffer.latest(ROOM, 3)));
+        assertNull(buffer.latest(ROOM, 4));
+    }
+
+    @Test
+    void removedMessagesAreNoLongerServed() {
+        buffer.seed(ROOM, List.of(message(ROOM, 2L), message(ROOM, 1L)));
+
+        buffer.remove(ROOM, 1L);
+        buffer.remove(ROOM, 9L);
+
+        assertEquals(List.of(2L), ids(buffer.latest(ROOM, 3)));
+        assertEquals(MESSAGE_BYTES, ((AtomicLong) ReflectionTestUtils.getField(buffer, "totalBytes")).get());
+    }
+
+    @Test
+    void ringKeepsTheNewestMessagesAcrossWraparound() {
+        buffer.seed(ROOM, List.of());
+        for (long id = 1; id <= 5; id++) {
+            buffer.append(message(ROOM, id));
+        }
+
+        RecentMessageBuffer.Snapshot snapshot = buffer.latest(ROOM, 3);
+        assertEquals(List.of(3L, 4L, 5L), ids(snapshot));
+        assertTrue(snapshot.hasOlder());
+        assertEquals(List.of(4L, 5L), ids(buffer.latest(ROOM, 2)));
+        // Older messages were overwritten, so the ring cannot answer for more than it holds
+        assertNull(buffer.latest(ROOM, 4));
+    }
+
+    @Test
+    void roomSmallerThanTheRingAnswersAnyCount() {
+        buffer.seed(ROOM, List.of(message(ROOM, 2L), message(ROOM, 1L)));
+
+        RecentMessageBuffer.Snapshot snapshot = buffer.latest(ROOM, 50);
+        assertEquals(List.of(1L, 2L), ids(snapshot));
+        assertFalse(snapshot.hasOlder());
+    }
+
+    @Test
+    void seedMergesMessagesAppendedWhileLoading() {
+        assertNull(buffer.latest(ROOM, 3));
+        buffer.append(message(ROOM, 3L));
+        buffer.seed(ROOM, List.of(message(ROOM, 2L), message(ROOM, 1L)));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(buffer.latest(ROOM, 3)));
+    }
+
+    @Test
+    void leastRecentlyUsedRoomsAreEvictedOverTheByteBudget() {
+        ReflectionTestUtils.setField(buffer, "maxBytes", 2 * MESSAGE_BYTES);
+        buffer.seed(1L, List.of(message(1L, 1L)));
+        buffer.seed(2L, List.of(message(2L, 2L)));
+        assertNotNull(buffer.latest(1L, 1));
+
+        buffer.seed(3L, List.of(message(3L, 3L)));
+
+        assertNull(buffer.latest(2L, 1));
+        assertNotNull(buffer.latest(1L, 1));
+        assertNotNull(buffer.latest(3L, 1));
+    }
+
+    @Test
+    void snapshotsAreCopies() {
+        buffer.seed(ROOM, List.of(message(ROOM, 1L)));
+
+        buffer.latest(ROOM, 1).messages().get(0).setStatus(ChatMessage.MessageStatus.READ);
+
+        assertEquals(ChatMessage.MessageStatus.SENT, buffer.latest(ROOM, 1).messages().get(0).getStatus());
+    }
+
+    @Test
+    void messagesAndReceiptsFromOtherNodesReachTheRing() {
+        buffer.seed(ROOM, List.of(message(ROOM, 1L)));
+        when(converter.fromMessage(any(), eq(RecentMessageBuffer.RelayedMessage.class)))
+                .thenReturn(RecentMessageBuffer.RelayedMessage.builder()
+                        .type(ChatMessage.MessageType.CHAT)
+                        .id(2L)
+                        .chatRoomId(ROOM)
+                        .senderUsername("b")
+                        .content("x")
+                        .status(ChatMessage.MessageStatus.SENT)
+                        .timestamp(LocalDateTime.now())
+                        .build());
+
+        buffer.onRemoteBroadcast(List.of("/topic/chatrooms/" + ROOM, "/topic/user.b"),
+                MimeTypeUtils.APPLICATION_JSON, new byte[0]);
+        assertEquals(List.of(1L, 2L), ids(buffer.latest(ROOM, 2)));
+
+        when(converter.fromMessage(any(), eq(RecentMessageBuffer.RelayedMessage.class)))
+                .thenReturn(RecentMessageBuffer.RelayedMessage.builder()
+                        .type(ChatMessage.MessageType.STATUS_UPDATE)
+                        .chatRoomId(ROOM)
+                        .upToMessageId(2L)
+                        .recipientUsername("b")
+                        .newStatus(ChatMessage.MessageStatus.DELIVERED)
+                        .build());
+        buffer.onRemoteBroadcast(List.of("/topic/chatrooms/" + ROOM), MimeTypeUtils.APPLICATION_JSON, new byte[0]);
+
+        List<ChatMessageDto> messages = buffer.latest(ROOM, 2).messages();
+        assertEquals(ChatMessage.MessageStatus.DELIVERED, messages.get(0).getStatus());
+        // b's own message is not delivered to b
+        assertEquals(ChatMessage.MessageStatus.SENT, messages.get(1).getStatus());
+    }
+
+    @Test
+    void broadcastsOutsideRoomTopicsAreIgnored() {
+        buffer.seed(ROOM, List.of());
+        when(converter.fromMessage(any(), eq(RecentMessageBuffer.RelayedMessage.class)))
+                .thenReturn(RecentMessageBuffer.RelayedMessage.builder()
+                        .type(ChatMessage.MessageType.CHAT)
+                        .id(1L)
+                        .chatRoomId(ROOM)
+                        .build());
+
+        buffer.onRemoteBroadcast(List.of("/topic/presence.a"), MimeTypeUtils.APPLICATION_JSON, new byte[0]);
+
+        assertEquals(List.of(), ids(buffer.latest(ROOM, 1)));
+    }
+
+    private static ChatMessageDto message(Long chatRoomId, long id) {
+        return ChatMessageDto.builder()
+                .id(id)
+                .chatRoomId(chatRoomId)
+                .senderUsername("a")
+                .content("x")
+                .type(ChatMessage.MessageType.CHAT)
+                .status(ChatMessage.MessageStatus.SENT)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static List<Long> ids(RecentMessageBuffer.Snapshot snapshot) {
+        return snapshot.messages().stream().map(ChatMessageDto::getId).toList();
+    }
+}
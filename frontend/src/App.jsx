@@ -443,12 +443,18 @@ const ChatApp = () => {
           body: JSON.stringify({ senderUsername: currentUsername, type: 'JOIN' }),
         });
 
-        // Subscribe to public topic for user JOIN/LEAVE status updates
-        client.subscribe('/topic/public', (message) => {
-          const parsedMessage = JSON.parse(message.body);
-          if (parsedMessage.type === 'JOIN' || parsedMessage.type === 'LEAVE') {
-            fetchUsersAndUpdateRef(); // refresh user online statuses
-          }
+        // Subscribe to presence diffs: friends who came online or went offline since the last diff
+        client.subscribe(`/topic/presence.${currentUsername}`, (message) => {
+          const diff = JSON.parse(message.body);
+          const online = new Set(diff.online || []);
+          const offline = new Set(diff.offline || []);
+          const applyDiff = (list) => list.map(u => {
+            if (online.has(u.username)) return { ...u, online: true };
+            if (offline.has(u.username)) return { ...u, online: false, lastSeen: diff.timestamp };
+            return u;
+          });
+          usersRef.current = applyDiff(usersRef.current);
+          setUsers((prev) => applyDiff(prev));
         });
 
         // Subscribe to personal topic for incoming messages (to update sidebar)
@@ -468,11 +474,12 @@ const ChatApp = () => {
             // Determine the "other user" we are chatting with
             let otherUsername = senderName;
             if (senderName === currentUsername) {
-              if (activeChatRef.current?.name) {
+              // Our own message, possibly sent from another tab or device: file it under the room's other member
+              const otherParticipant = parsedMessage.participants?.find(p => p !== currentUsername);
+              if (otherParticipant) {
+                otherUsername = otherParticipant;
+              } else if (activeChatRef.current?.name && activeChatRef.current.id === parsedMessage.chatRoomId) {
                 otherUsername = activeChatRef.current.name;
-              } else if (parsedMessage.chatRoom?.participants) {
-                const otherParticipant = parsedMessage.chatRoom.participants.find(p => p.username !== currentUsername);
-                if (otherParticipant) otherUsername = otherParticipant.username;
               }
             }
 
@@ -566,7 +573,11 @@ const ChatApp = () => {
         if (chat.id && stompClientRef.current?.connected) {
           stompClientRef.current.publish({
             destination: '/app/chat.readMessages',
-            body: JSON.stringify({ chatRoomId: chat.id, senderUsername: username })
+            body: JSON.stringify({
+              chatRoomId: chat.id,
+              senderUsername: username,
+              lastReadMessageId: decryptedData.length ? decryptedData[decryptedData.length - 1].id : null
+            })
           });
         }
       })
@@ -581,9 +592,22 @@ const ChatApp = () => {
         const parsedMessage = JSON.parse(message.body);
 
         if (parsedMessage.type === 'STATUS_UPDATE') {
-          setMessages((prev) => prev.map(m =>
-            (parsedMessage.messageIds || []).includes(m.id) ? { ...m, status: parsedMessage.newStatus } : m
-          ));
+          if (parsedMessage.upToMessageId != null) {
+            // Receipt watermark: everything up to the id that the recipient didn't send moves forward,
+            // never back (a late DELIVERED must not undo READ)
+            const rank = { SENT: 0, DELIVERED: 1, READ: 2 };
+            setMessages((prev) => prev.map(m => {
+              const senderName = m.senderUsername || m.sender?.username;
+              return m.id <= parsedMessage.upToMessageId && senderName !== parsedMessage.recipientUsername
+                && (rank[m.status] ?? 0) < rank[parsedMessage.newStatus]
+                ? { ...m, status: parsedMessage.newStatus }
+                : m;
+            }));
+          } else {
+            setMessages((prev) => prev.map(m =>
+              (parsedMessage.messageIds || []).includes(m.id) ? { ...m, status: parsedMessage.newStatus } : m
+            ));
+          }
         } else {
           // Send read receipt if we receive a message that isn't ours while actively in this chat
           const senderName = parsedMessage.senderUsername || parsedMessage.sender?.username;
@@ -609,7 +633,11 @@ const ChatApp = () => {
             if (senderName !== username) {
               stompClientRef.current.publish({
                 destination: '/app/chat.readMessages',
-                body: JSON.stringify({ chatRoomId: parsedMessage.chatRoomId || chat.id, senderUsername: username })
+                body: JSON.stringify({
+                  chatRoomId: parsedMessage.chatRoomId || chat.id,
+                  senderUsername: username,
+                  lastReadMessageId: parsedMessage.id
+                })
               });
             }
           } else {